@@ -9,7 +9,7 @@ import java.awt.Graphics;
  * @author Carter Kruse & John Deforest, Dartmouth CS 10, Spring 2022
  */
 
-public class Blob implements Point2D
+public class Blob implements Circle2D
 {
     protected double x, y; // Position
     protected double dx = 0, dy = 0; // Velocity: Defaults to none.
@@ -0,0 +1,297 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * A Write-Buffered Point Quadtree
+ * Wraps a PointQuadtree, appending inserted points to a buffer (primitive arrays of their coordinates, and the points)
+ * instead of descending the tree for each one. The buffer is merged into the tree in bulk (with PointQuadtree.insertAll)
+ * when it fills, or when a query needs it merged.
+ *
+ * A circle or rectangle query scans a small buffer linearly (at most scanLimit points) along with the tree, so rare
+ * queries between bursts of inserts do not force a merge; a larger buffer is merged first, as it is for remove and
+ * update. The queries which need the whole tree (size, allPoints, nearest, forEachPairWithin) always merge first.
+ *
+ * Each buffered point's slot is kept in an identity map, so remove and update find it (or learn it is in the tree)
+ * without scanning the buffer. A removed point's slot is left empty until the merge, so the buffered points stay in
+ * the order they were inserted.
+ *
+ * Edge Cases: Until it is merged, a buffered point is reported alongside any point at the same location in the tree
+ * (which merging replaces, as insert would).
+ *
+ * @author Carter Kruse & John Deforest, Dartmouth CS 10, Spring 2022
+ */
+public class BufferedQuadtree<E extends Point2D> implements SpatialIndex<E>
+{
+    private static final int defaultCapacity = 4096; // Buffered points, unless otherwise specified.
+    private static final int defaultScanLimit = 256; // Buffered points a query scans rather than merging, unless otherwise specified.
+
+    private final PointQuadtree<E> tree; // The points merged so far.
+    private final int scanLimit; // Most buffered points a query scans linearly before it merges them instead.
+
+    private final double[] xs, ys; // Coordinates of the buffered points.
+    private final Object[] items; // The buffered points, in the order they were inserted (null where one was removed).
+    private final Map<E, Integer> slots = new IdentityHashMap<>(); // The index of each buffered point in items.
+    private int count; // How many slots of the buffer are used (including those left empty by removals).
+
+    /**
+     * Constructor
+     *
+     * Buffers inserts into the quadtree, with the default capacity and scan limit.
+     */
+    public BufferedQuadtree(PointQuadtree<E> tree)
+    {
+        this(tree, defaultCapacity, defaultScanLimit);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param tree The quadtree to merge the buffered points into.
+     * @param capacity How many points are buffered before they are merged.
+     * @param scanLimit Most buffered points a query scans linearly before it merges them instead.
+     */
+    public BufferedQuadtree(PointQuadtree<E> tree, int capacity, int scanLimit)
+    {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+
+        this.tree = tree;
+        this.scanLimit = scanLimit;
+        this.xs = new double[capacity];
+        this.ys = new double[capacity];
+        this.items = new Object[capacity];
+    }
+
+    /**
+     * Returns the quadtree, after merging the buffered points into it.
+     */
+    public PointQuadtree<E> getTree()
+    {
+        flush();
+        return tree;
+    }
+
+    /**
+     * Returns how many points are buffered (not yet merged into the quadtree).
+     */
+    public int getBuffered()
+    {
+        return slots.size();
+    }
+
+    /**
+     * Appends the point to the buffer, merging the buffer into the quadtree if it is full.
+     */
+    public void insert(E point)
+    {
+        if (count == items.length) flush();
+
+        // A point inserted again while still buffered leaves its earlier slot empty.
+        Integer earlier = slots.put(point, count);
+        if (earlier != null) items[earlier] = null;
+
+        xs[count] = point.getX();
+        ys[count] = point.getY();
+        items[count] = point;
+        count += 1;
+    }
+
+    /**
+     * Appends all the points to the buffer, merging it into the quadtree each time it fills.
+     */
+    public void insertAll(Collection<E> points)
+    {
+        for (E point : points)
+        {
+            insert(point);
+        }
+    }
+
+    /**
+     * Merges the buffered points into the quadtree, in bulk.
+     */
+    @SuppressWarnings("unchecked")
+    public void flush()
+    {
+        if (count == 0) return;
+
+        // Taking each point out of the map as it goes (rather than clearing its whole table, which may be far larger).
+        List<E> batch = new ArrayList<>(slots.size());
+        for (int i = 0; i < count; i += 1)
+        {
+            if (items[i] == null) continue;
+
+            batch.add((E) items[i]);
+            slots.remove(items[i]);
+        }
+        tree.insertAll(batch);
+
+        Arrays.fill(items, 0, count, null);
+        count = 0;
+    }
+
+    /**
+     * Removes the point from the buffer (leaving its slot empty, so the others keep their order) or, if it is not
+     * buffered, from the quadtree.
+     *
+     * @param point The point, at the location where it was inserted (or last updated).
+     *
+     * @return Whether the point was found.
+     */
+    public boolean remove(E point)
+    {
+        if (count > scanLimit) flush();
+
+        Integer i = slots.remove(point);
+        if (i == null) return tree.remove(point);
+
+        items[i] = null;
+        return true;
+    }
+
+    /**
+     * Updates the buffer (or the quadtree, if the point is not buffered) after the point has moved from (oldX, oldY)
+     * to its current location.
+     *
+     * @return Whether the point was found (at its old location).
+     */
+    public boolean update(E point, double oldX, double oldY)
+    {
+        // A buffered point is updated in place, before any merge (which would insert it at its new location, so the
+        // quadtree would not find it at its old one).
+        Integer i = slots.get(point);
+        if (i != null)
+        {
+            xs[i] = point.getX();
+            ys[i] = point.getY();
+            return true;
+        }
+
+        if (count > scanLimit) flush();
+        return tree.update(point, oldX, oldY);
+    }
+
+    /**
+     * Finds the number of points, after merging the buffered points (some of which may replace others).
+     */
+    public int size()
+    {
+        flush();
+        return tree.size();
+    }
+
+    /**
+     * Builds a list of all the points, after merging the buffered points.
+     */
+    public List<E> allPoints()
+    {
+        flush();
+        return tree.allPoints();
+    }
+
+    /**
+     * Finds all points within the circle.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     *
+     * @return The points in the circle (those in the quadtree, then those still buffered).
+     */
+    public List<E> findInCircle(double cx, double cy, double cr)
+    {
+        List<E> pointsInCircle = new ArrayList<>();
+        forEachInCircle(cx, cy, cr, pointsInCircle::add);
+        return pointsInCircle;
+    }
+
+    /**
+     * Passes each point within the circle to the action: those in the quadtree, then those still buffered.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     * @param action What to do with each point in the circle.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachInCircle(double cx, double cy, double cr, Consumer<? super E> action)
+    {
+        if (count > scanLimit) flush();
+
+        tree.forEachInCircle(cx, cy, cr, action);
+
+        // Scanning the buffer in order, past the empty slots.
+        for (int i = 0; i < count; i += 1)
+        {
+            if (items[i] != null && Geometry.pointInCircle(xs[i], ys[i], cx, cy, cr)) action.accept((E) items[i]);
+        }
+    }
+
+    /**
+     * Returns whether there is a point other than self within the circle, stopping at the first one found.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     * @param self The point to ignore (compared by identity).
+     */
+    public boolean anyInCircleExcept(double cx, double cy, double cr, E self)
+    {
+        if (count > scanLimit) flush();
+
+        for (int i = 0; i < count; i += 1)
+        {
+            if (items[i] != null && items[i] != self && Geometry.pointInCircle(xs[i], ys[i], cx, cy, cr)) return true;
+        }
+
+        return tree.anyInCircleExcept(cx, cy, cr, self);
+    }
+
+    /**
+     * Finds all points within the rectangle (not on its edges, as in GeometryExtra.pointInRectangle).
+     *
+     * @param rx1 Top left x coordinate of rectangle.
+     * @param ry1 Top left y coordinate of rectangle.
+     * @param rx2 Bottom right x coordinate of rectangle.
+     * @param ry2 Bottom right y coordinate of rectangle.
+     *
+     * @return The points in the rectangle (those in the quadtree, then those still buffered).
+     */
+    @SuppressWarnings("unchecked")
+    public List<E> findInRectangle(double rx1, double ry1, double rx2, double ry2)
+    {
+        if (count > scanLimit) flush();
+
+        List<E> pointsInRectangle = tree.findInRectangle(rx1, ry1, rx2, ry2);
+
+        for (int i = 0; i < count; i += 1)
+        {
+            if (items[i] != null && GeometryExtra.pointInRectangle(xs[i], ys[i], rx1, ry1, rx2, ry2)) pointsInRectangle.add((E) items[i]);
+        }
+
+        return pointsInRectangle;
+    }
+
+    /**
+     * Finds the k points nearest to the location, after merging the buffered points.
+     */
+    public List<E> nearest(double x, double y, int k)
+    {
+        flush();
+        return tree.nearest(x, y, k);
+    }
+
+    /**
+     * Passes each pair of points within the distance of each other to the action, after merging the buffered points.
+     */
+    public void forEachPairWithin(double distance, BiConsumer<? super E, ? super E> action)
+    {
+        flush();
+        tree.forEachPairWithin(distance, action);
+    }
+}
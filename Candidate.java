@@ -0,0 +1,16 @@
+/**
+ * A node or point, with its squared distance from a query location, for the nearest searches of the spatial indexes.
+ *
+ * @author Carter Kruse & John Deforest, Dartmouth CS 10, Spring 2022
+ */
+class Candidate<T>
+{
+    final T item;
+    final double distance;
+
+    Candidate(T item, double distance)
+    {
+        this.item = item;
+        this.distance = distance;
+    }
+}
@@ -0,0 +1,9 @@
+/**
+ * An interface for 2D circles: a point (the center) with a radius.
+ *
+ * @author Carter Kruse & John Deforest, Dartmouth CS 10, Spring 2022
+ */
+public interface Circle2D extends Point2D
+{
+    public double getR();
+}
@@ -0,0 +1,248 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A Bucketed PR Quadtree of Circles
+ * Stores circles (such as blobs) by their centers, split as in PRQuadtree (which it extends, sharing its splitting,
+ * merging, path compression and queries), and also keeps the radius of each circle and, at each node, the largest
+ * radius of any circle in its subtree (maxR).
+ *
+ * A circle of radius r overlaps the query circle only if its center is within cr + r of the query's center, so a
+ * subtree can be skipped when its region is farther than cr + maxR from the query's center. Each subtree is widened
+ * only by its own largest radius, so a few large circles do not slow down the queries among the many small ones.
+ *
+ * The radii are those given when each circle was inserted or last updated; a circle which has grown (or shrunk)
+ * is updated like one which has moved. The largest radius of a node only grows as circles are added to it, so it
+ * never misses an overlap, and tightenRadii() shrinks it back after circles are removed or shrink.
+ *
+ * The SpatialIndex methods (findInCircle, nearest, ...) treat each circle as its center, as the other engines do.
+ * Unlike the other engines, circles at the same location are all kept (they do overlap).
+ *
+ * @author Carter Kruse & John Deforest, Dartmouth CS 10, Spring 2022
+ */
+public class CircleQuadtree<E extends Circle2D> extends PRQuadtree<E>
+{
+    private static final int defaultCapacity = 8; // Circles per leaf, unless otherwise specified.
+
+    private double maxR; // Largest radius of a circle in the subtree (at least as large).
+    private double[] rs; // Radii of the circles in the leaf (alongside their centers, allocated on first use).
+
+
+    /**
+     * Constructor
+     *
+     * Initializes an empty quadtree over the rectangle (which holds the centers), with the default capacity per leaf.
+     */
+    public CircleQuadtree(double x1, double y1, double x2, double y2)
+    {
+        this(x1, y1, x2, y2, defaultCapacity);
+    }
+
+    /**
+     * Constructor
+     *
+     * Initializes an empty quadtree over the rectangle (which holds the centers).
+     *
+     * @param capacity How many circles a leaf holds before splitting.
+     */
+    public CircleQuadtree(double x1, double y1, double x2, double y2, int capacity)
+    {
+        this(x1, y1, x2, y2, capacity, 0);
+    }
+
+    private CircleQuadtree(double x1, double y1, double x2, double y2, int capacity, int depth)
+    {
+        super(x1, y1, x2, y2, capacity, depth, false);
+    }
+
+    /**
+     * Returns the largest radius of a circle in this node's subtree (possibly larger, until tightenRadii() is called).
+     */
+    public double getMaxR()
+    {
+        return maxR;
+    }
+
+    /**
+     * Returns the child (if any) at the given quadrant, 1-4.
+     */
+    @Override
+    public CircleQuadtree<E> getChild(int quadrant)
+    {
+        return (CircleQuadtree<E>) super.getChild(quadrant);
+    }
+
+    /**
+     * Shrinks the largest radius of each node to the largest radius of the circles now in its subtree
+     * (after circles have been removed, or have shrunk), so the queries prune as tightly as possible.
+     */
+    public void tightenRadii()
+    {
+        if (isLeaf())
+        {
+            maxR = 0;
+            for (int i = 0; i < count; i += 1)
+            {
+                maxR = Math.max(maxR, rs[i]);
+            }
+        }
+
+        else
+        {
+            // The tree is at most maxDepth deep, so the children are tightened recursively.
+            maxR = 0;
+            for (int quadrant = 1; quadrant <= 4; quadrant += 1)
+            {
+                CircleQuadtree<E> child = getChild(quadrant);
+                child.tightenRadii();
+                maxR = Math.max(maxR, child.maxR);
+            }
+        }
+    }
+
+    /**
+     * Finds all circles overlapping (or touching) the query circle.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     *
+     * @return The circles overlapping the query circle.
+     */
+    public List<E> findOverlapping(double cx, double cy, double cr)
+    {
+        List<E> overlapping = new ArrayList<>();
+        forEachOverlapping(cx, cy, cr, overlapping::add);
+        return overlapping;
+    }
+
+    /**
+     * Passes each circle overlapping (or touching) the query circle to the action, without building a list.
+     * Each circle overlaps if its center is within the sum of the radii, and a subtree is skipped when even its
+     * largest circle, centered anywhere in its region, could not reach the query.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     * @param action What to do with each overlapping circle.
+     */
+    public void forEachOverlapping(double cx, double cy, double cr, Consumer<? super E> action)
+    {
+        search(cx, cy, cr, true, null, circle ->
+        {
+            action.accept(circle);
+            return true;
+        });
+    }
+
+    /**
+     * Returns whether a circle other than the given one overlaps (or touches) it, stopping at the first one found.
+     *
+     * @param circle The circle, at the location (and with the radius) it was inserted or last updated with;
+     *               it is ignored itself (compared by identity).
+     */
+    public boolean anyOverlappingExcept(E circle)
+    {
+        return search(circle.getX(), circle.getY(), circle.getR(), true, circle, other -> false);
+    }
+
+    // Extension Points (the radii, alongside PRQuadtree's leaf arrays)
+
+    @Override
+    protected CircleQuadtree<E> newNode(double x1, double y1, double x2, double y2, int depth)
+    {
+        return new CircleQuadtree<>(x1, y1, x2, y2, getCapacity(), depth);
+    }
+
+    /**
+     * Widens the node for the radius of a circle about to be added beneath it.
+     */
+    @Override
+    protected void include(E circle)
+    {
+        maxR = Math.max(maxR, circle.getR());
+    }
+
+    /**
+     * Widens the node for the largest radius beneath a child placed under it.
+     */
+    @Override
+    protected void include(PRQuadtree<E> child)
+    {
+        maxR = Math.max(maxR, child.reach());
+    }
+
+    @Override
+    protected double extent(int i)
+    {
+        return rs[i];
+    }
+
+    @Override
+    protected double reach()
+    {
+        return maxR;
+    }
+
+    /**
+     * Adds the circle to a leaf with its current radius.
+     */
+    @Override
+    protected void add(E circle, double px, double py)
+    {
+        add(circle, px, py, circle.getR());
+    }
+
+    /**
+     * Adds the circle at the index of another leaf, with the radius it has there (each leaf's largest radius is that
+     * of its own circles, when they are split or merged).
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void addFrom(PRQuadtree<E> leaf, int i)
+    {
+        CircleQuadtree<E> from = (CircleQuadtree<E>) leaf;
+        add((E) from.items[i], from.xs[i], from.ys[i], from.rs[i]);
+    }
+
+    /**
+     * Updates the center and radius of the circle at the index of a leaf.
+     */
+    @Override
+    protected void set(int i, E circle, double px, double py)
+    {
+        super.set(i, circle, px, py);
+        rs[i] = circle.getR();
+        maxR = Math.max(maxR, rs[i]);
+    }
+
+    @Override
+    protected void clear()
+    {
+        super.clear();
+        rs = null;
+    }
+
+    @Override
+    protected void removeAt(int i)
+    {
+        rs[i] = rs[count - 1];
+        super.removeAt(i);
+    }
+
+    /**
+     * Adds the circle to a leaf, keeping its radius in an array grown alongside PRQuadtree's.
+     */
+    private void add(E circle, double px, double py, double pr)
+    {
+        super.add(circle, px, py);
+
+        if (rs == null) rs = new double[getCapacity()];
+        else if (count > rs.length) rs = Arrays.copyOf(rs, rs.length * 2);
+
+        rs[count - 1] = pr;
+        maxR = Math.max(maxR, pr);
+    }
+}
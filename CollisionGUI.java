@@ -2,9 +2,13 @@ import java.awt.*;
 import javax.swing.*;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 /**
- * Using a quadtree for collision detection.
+ * Using a quadtree (or another spatial index) for collision detection.
  *
  * @author Chris Bailey-Kellogg, Dartmouth CS 10, Spring 2015
  * @author CBK, Spring 2016
@@ -14,18 +18,26 @@ import java.util.ArrayList;
 public class CollisionGUI extends DrawingGUI
 {
     private static final int width = 800, height = 600; // Size of the universe.
+    private static final String[] engines = {"quadtree", "pr", "grid", "linear", "circle"}; // Index engines to switch between.
 
     private List<Blob> blobs; // List of all the blobs.
+    private SpatialIndex<Blob> indexOfBlobs; // Holds all the blobs, kept up to date as they move.
+    private String engine = System.getProperty("index", "quadtree"); // Which index engine finds the colliders (see SpatialIndex.create, or "circle" for CircleQuadtree).
+    private double cellSize; // Cell size for a grid index: twice the largest blob radius, so queries look at the 3x3 cells around a blob.
     private List<Blob> colliders; // List of the blobs who collided at this step.
     private char blobType = 'b'; // What type of blob to create.
     private char collisionHandler = 'c'; // When there is a collision, color (c) or destroy (d) them.
     private int delay = 100; // Timer Control
+    private boolean measure = false; // If true, then print out how many ticks per second the collision detection allows.
+    private long measuredNanos = 0; // Time spent moving blobs and finding colliders, since the last printout.
+    private int measuredTicks = 0; // Ticks since the last printout.
 
     public CollisionGUI()
     {
         super("Super Collider", width, height);
 
         blobs = new ArrayList<Blob>();
+        rebuildIndex();
 
         // Timer drives the animation.
         startTimer();
@@ -36,19 +48,89 @@ public class CollisionGUI extends DrawingGUI
      */
     private void add(int x, int y)
     {
+        Blob blob;
+
         if (blobType == 'b')
         {
-            blobs.add(new Bouncer(x, y, width, height));
+            blob = new Bouncer(x, y, width, height);
         }
 
         else if (blobType == 'w')
         {
-            blobs.add(new Wanderer(x, y));
+            blob = new Wanderer(x, y);
         }
 
         else
         {
             System.err.println("Unknown Blob Type: " + blobType);
+            return;
+        }
+
+        blobs.add(blob);
+
+        // Inserting the blob into the index (a grid's cells must be at least as large as the biggest collision radius).
+        if (blob.r * 2 > cellSize) rebuildIndex();
+        else place(blob);
+    }
+
+    /**
+     * Inserts the blob into the index, first nudging it off any other blob at exactly its location
+     * (a quadtree holds one point per location, so inserting it there would drop the other blob from the index).
+     *
+     * Each nudge is at least the spacing of doubles near the width: near 0, the spacing is so small that the squared
+     * distance of a single step underflows to 0, and the blob would still be found "at" the other blob's location.
+     */
+    private void place(Blob blob)
+    {
+        while (indexOfBlobs.anyInCircleExcept(blob.x, blob.y, 0, blob))
+        {
+            blob.x += Math.max(Math.ulp(blob.x), Math.ulp((double) width));
+        }
+        indexOfBlobs.insert(blob);
+    }
+
+    /**
+     * Rebuilds the index from all the blobs, with the current engine.
+     */
+    private void rebuildIndex()
+    {
+        double maxRadius = 5; // The default radius of a blob.
+        for (Blob blob : blobs)
+        {
+            maxRadius = Math.max(maxRadius, blob.r);
+        }
+        cellSize = maxRadius * 2;
+
+        // A quadtree is built balanced, and a linear quadtree by sorting; the other engines are filled one blob at a time.
+        if (engine.equals("quadtree"))
+        {
+            PointQuadtree<Blob> tree = PointQuadtree.build(blobs, 0, 0, width, height);
+            tree.setTightBounds(true); // Blobs are sparse, so the boxes reject many more subtrees than the regions.
+            indexOfBlobs = tree;
+        }
+
+        else if (engine.equals("linear"))
+        {
+            indexOfBlobs = LinearQuadtree.build(blobs, 0, 0, width, height);
+        }
+
+        // A circle quadtree keeps each blob's radius, so it does not depend on the largest one.
+        else if (engine.equals("circle"))
+        {
+            indexOfBlobs = new CircleQuadtree<>(0, 0, width, height);
+            for (Blob blob : blobs)
+            {
+                indexOfBlobs.insert(blob);
+            }
+        }
+
+        else
+        {
+            indexOfBlobs = SpatialIndex.create(engine, 0, 0, width, height, cellSize);
+            for (Blob blob : blobs)
+            {
+                indexOfBlobs.insert(blob);
+            }
         }
     }
 
@@ -90,6 +172,29 @@ public class CollisionGUI extends DrawingGUI
             }
         }
 
+        else if (k == 'R') // Add 1000 new blobs at random positions.
+        {
+            for (int i = 0; i < 1000; i += 1)
+            {
+                add((int) (width * Math.random()), (int) (height * Math.random()));
+            }
+            repaint();
+        }
+
+        else if (k == 'i') // Switch to the next index engine used to find colliders.
+        {
+            engine = engines[(Arrays.asList(engines).indexOf(engine) + 1) % engines.length];
+            rebuildIndex();
+            System.out.println("Index: " + engine);
+        }
+
+        else if (k == 'm') // Toggle printing how many ticks per second the collision detection allows.
+        {
+            measure = !measure;
+            measuredNanos = 0;
+            measuredTicks = 0;
+        }
+
         else if (k == 'c' || k == 'd') // Control how the collisions are handled.
         {
             collisionHandler = k;
@@ -140,54 +245,62 @@ public class CollisionGUI extends DrawingGUI
      */
     private void findColliders()
     {
-        // Creating an empty tree. The node will initialize the tree.
-        PointQuadtree<Blob> treeOfBlobs = null;
-
-        // Filling the PointQuadtree with all the blobs.
+        // Identifying the colliders from the pairs of blobs found by the forEachPairWithin() method of the index.
 
-        // Checking to make sure the list of blobs is not null.
-        if (this.blobs != null)
+        // Checking to ensure that the index is not null.
+        if (indexOfBlobs != null)
         {
-            // Cycling through all the blobs in the list.
-            for (Blob blob : this.blobs)
+            // If the list of colliders is null, then we create a new ArrayList of type Blob.
+            if (colliders == null)
+            {
+                colliders = new ArrayList<Blob>();
+            }
+
+            /* A circle quadtree knows the radius of every blob, so two blobs collide when they overlap (their centers are
+            within the sum of their radii), however different their sizes.
+             */
+            if (indexOfBlobs instanceof CircleQuadtree)
             {
-                // If the PointQuadtree does not have any blobs, then create a new PointQuadtree with the node.
-                if (treeOfBlobs == null)
+                CircleQuadtree<Blob> circles = (CircleQuadtree<Blob>) indexOfBlobs;
+                circles.tightenRadii(); // Blobs may have shrunk (or been removed) since the last step.
+
+                for (Blob blob : blobs)
                 {
-                    treeOfBlobs = new PointQuadtree<Blob>(blob, 0, 0, width, height);
+                    if (circles.anyOverlappingExcept(blob)) colliders.add(blob);
                 }
+                return;
+            }
 
-                // Otherwise, insert the blob into the PointQuadtree.
-                else
+            /* Only the point quadtree finds the pairs in a single traversal; the other engines would query around each
+            blob anyway (and report every pair), so for them it is faster to stop at the first other blob found.
+             */
+            if (!(indexOfBlobs instanceof PointQuadtree))
+            {
+                for (Blob blob : blobs)
                 {
-                    treeOfBlobs.insert(blob);
+                    // The blob itself is ignored. We use 2 * [radius], as this detects a collision on the edges of the blobs.
+                    if (indexOfBlobs.anyInCircleExcept(blob.x, blob.y, blob.r * 2, blob))
+                    {
+                        colliders.add(blob);
+                    }
                 }
+                return;
             }
-        }
 
-        // Identifying the colliders based on the findInCircle() method.
+            // Each blob is listed once, however many blobs it collided with.
+            Set<Blob> collided = Collections.newSetFromMap(new IdentityHashMap<>());
 
-        // Checking to ensure that the PointQuadtree is not null.
-        if (treeOfBlobs != null)
-        {
-            // If the list of colliders is null, then we create a new ArrayList of type Blob.
-            if (colliders == null)
+            /* Finding every pair of blobs within twice the largest radius (the cell size), in a single pass.
+            A blob collides with another within 2 * [its radius], as this detects a collision on the edges of the blobs.
+             */
+            indexOfBlobs.forEachPairWithin(cellSize, (blob, other) ->
             {
-                colliders = new ArrayList<Blob>();
-            }
+                double dx = blob.x - other.x, dy = blob.y - other.y;
+                double distanceSquared = dx * dx + dy * dy;
 
-            // Cycling through all the blobs in the list.
-            for (Blob blob : blobs)
-            {
-                /* For each blob, we check to see if any other blob collided with it.
-                The value of 1 is used, as we already know the initial blob is in the circle.
-                We use 2 * [radius], as this detects a collision on the edges of the blobs.
-                 */
-                if (treeOfBlobs.findInCircle(blob.x, blob.y, blob.r * 2).size() > 1)
-                {
-                    colliders.add(blob); // If so, we add this blob to the list of colliders.
-                }
-            }
+                if (distanceSquared <= 4 * blob.r * blob.r && collided.add(blob)) colliders.add(blob);
+                if (distanceSquared <= 4 * other.r * other.r && collided.add(other)) colliders.add(other);
+            });
         }
     }
 
@@ -196,17 +309,32 @@ public class CollisionGUI extends DrawingGUI
      */
     public void handleTimer()
     {
-        // Ask all the blobs to move themselves.
+        long start = System.nanoTime();
+        boolean outgrown = false; // Whether a blob has grown too big for the grid's cells.
+
+        // Ask all the blobs to move themselves, updating the index as each one moves.
         for (Blob blob : blobs)
         {
+            double oldX = blob.x, oldY = blob.y;
             blob.step();
+
+            // A blob that was dropped from a tree (having moved onto another) is placed again, without evicting the other.
+            if (!indexOfBlobs.update(blob, oldX, oldY))
+            {
+                place(blob);
+            }
+
+            outgrown = outgrown || blob.r * 2 > cellSize;
         }
 
+        // A circle quadtree is updated with each blob's new radius, so only the other engines are rebuilt.
+        if (outgrown && !engine.equals("circle")) rebuildIndex();
+
         // Check for collisions.
         if (blobs.size() > 0)
         {
-            // Ensuring that the colliders do not remain red after the collision has occurred.
-            colliders = null;
+            // Ensuring that the colliders do not remain red after the collision has occurred (reusing the list).
+            if (colliders != null) colliders.clear();
 
             findColliders();
 
@@ -214,7 +342,25 @@ public class CollisionGUI extends DrawingGUI
             if (collisionHandler == 'd')
             {
                 blobs.removeAll(colliders); // Removing the colliders from the list of blobs.
-                colliders = null; // Setting the list of colliders to null.
+
+                indexOfBlobs.removeAll(colliders); // Removing the colliders from the index.
+
+                colliders.clear(); // Clearing the list of colliders.
+            }
+        }
+
+        // Printing the ticks per second (moving blobs and finding colliders only) every 100 ticks.
+        if (measure)
+        {
+            measuredNanos += System.nanoTime() - start;
+            measuredTicks += 1;
+
+            if (measuredTicks == 100)
+            {
+                System.out.println("Blobs: " + blobs.size() + ", Index: " + engine
+                        + ", Ticks/Second: " + (long) (measuredTicks * 1e9 / measuredNanos));
+                measuredNanos = 0;
+                measuredTicks = 0;
             }
         }
 
@@ -260,6 +406,9 @@ public class CollisionGUI extends DrawingGUI
         // Adding the blob objects to the array of blobs to be displayed in the GUI.
         blobs.add(bouncer3);
         blobs.add(bouncer4);
+
+        // Building the index of the test blobs.
+        rebuildIndex();
     }
 
     public static void main(String[] args)
@@ -0,0 +1,452 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * A Concurrent Point Quadtree
+ * Several threads can insert points at once, and others can query while they do, without any locks.
+ *
+ * Each node's four child slots are an AtomicReferenceArray. A new node is built completely (its split and region are
+ * final, and its point volatile) before it is published into an empty slot by a compare-and-set, so a reader either
+ * sees no child or a whole one. When two threads race for the same slot, one wins and the other descends into the winner's node
+ * and carries on, so threads inserting into different regions (most of the time, different slots) do not wait on
+ * each other at all.
+ *
+ * The splits and edge cases are those of PointQuadtree: a point at the same location as another replaces it.
+ * Points cannot be removed or moved (each node keeps the location its point had when inserted, which the queries test).
+ *
+ * main() runs a stress test of concurrent inserts, then a throughput benchmark at 1-32 threads.
+ *
+ * @author Carter Kruse & John Deforest, Dartmouth CS 10, Spring 2022
+ */
+public class ConcurrentPointQuadtree<E extends Point2D>
+{
+    private final double x1, y1; // Upper-left corner of the region.
+    private final double x2, y2; // Bottom-right corner of the region.
+    private final AtomicReference<Node<E>> root = new AtomicReference<>(); // The root node (null until the first insert).
+    private final LongAdder size = new LongAdder(); // Number of nodes (and points), counted as nodes are published.
+
+    /**
+     * Constructor
+     *
+     * Initializes an empty quadtree over the rectangle. The first point inserted anchors it.
+     */
+    public ConcurrentPointQuadtree(double x1, double y1, double x2, double y2)
+    {
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+    }
+
+    /**
+     * Finds the number of points in the quadtree (exact once the inserts in progress have finished).
+     */
+    public int size()
+    {
+        return size.intValue();
+    }
+
+    /**
+     * Inserts the point into the tree (safe to call from several threads at once).
+     *
+     * Edge Cases: As in PointQuadtree, a point at the same x- or y-coordinate as a parent goes to the quadrant with the
+     * lowest number (1-4), and a point at the same location as another replaces it.
+     */
+    public void insert(E point)
+    {
+        double px = point.getX(), py = point.getY();
+
+        // An empty quadtree takes the point as its root (unless another thread gets there first).
+        Node<E> node = root.get();
+        if (node == null)
+        {
+            if (root.compareAndSet(null, new Node<>(point, px, py, x1, y1, x2, y2)))
+            {
+                size.increment();
+                return;
+            }
+            node = root.get();
+        }
+
+        // Descending iteratively from the root.
+        while (true)
+        {
+            int quadrant = node.quadrant(px, py);
+
+            // Replacing the point at the same location.
+            if (quadrant == 0)
+            {
+                node.point = point;
+                return;
+            }
+
+            Node<E> child = node.children.get(quadrant - 1);
+
+            // Otherwise, publishing a new node with the appropriate bounds for the quadrant into the empty slot.
+            if (child == null)
+            {
+                Node<E> added;
+                if (quadrant == 1) added = new Node<>(point, px, py, node.px, node.y1, node.x2, node.py);
+                else if (quadrant == 2) added = new Node<>(point, px, py, node.x1, node.y1, node.px, node.py);
+                else if (quadrant == 3) added = new Node<>(point, px, py, node.x1, node.py, node.px, node.y2);
+                else added = new Node<>(point, px, py, node.px, node.py, node.x2, node.y2);
+
+                if (node.children.compareAndSet(quadrant - 1, null, added))
+                {
+                    size.increment();
+                    return;
+                }
+
+                // Another thread filled the slot first: descending into its node instead.
+                child = node.children.get(quadrant - 1);
+            }
+
+            node = child;
+        }
+    }
+
+    /**
+     * Builds a list of all the points in the quadtree, in pre-order (each node, then its children in order 1-4).
+     */
+    public List<E> allPoints()
+    {
+        List<E> pointsList = new ArrayList<>();
+        Node<E> start = root.get();
+        if (start == null) return pointsList;
+
+        Node<E>[] stack = newStack();
+        int top = 0;
+        stack[top++] = start;
+
+        while (top > 0)
+        {
+            Node<E> node = stack[--top];
+            pointsList.add(node.point);
+
+            if (top + 4 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+            top = node.pushChildren(stack, top);
+        }
+
+        return pointsList;
+    }
+
+    /**
+     * Finds all points within the circle.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     *
+     * @return The points in the circle.
+     */
+    public List<E> findInCircle(double cx, double cy, double cr)
+    {
+        List<E> pointsInCircle = new ArrayList<>();
+        forEachInCircle(cx, cy, cr, pointsInCircle::add);
+        return pointsInCircle;
+    }
+
+    /**
+     * Passes each point within the circle to the action, without building a list.
+     * Points inserted while the query runs may or may not be found.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     * @param action What to do with each point in the circle.
+     */
+    public void forEachInCircle(double cx, double cy, double cr, Consumer<? super E> action)
+    {
+        Node<E> start = root.get();
+        if (start == null) return;
+
+        // A fresh stack for each query, so the quadtree can be queried from several threads at once.
+        Node<E>[] stack = newStack();
+        int top = 0;
+        stack[top++] = start;
+
+        while (top > 0)
+        {
+            Node<E> node = stack[--top];
+
+            // Using the Geometry helper method to determine if the circle intersects the node's region.
+            if (Geometry.circleIntersectsRectangle(cx, cy, cr, node.x1, node.y1, node.x2, node.y2))
+            {
+                if (Geometry.pointInCircle(node.px, node.py, cx, cy, cr)) action.accept(node.point);
+
+                // Pushing the children in reverse, so they are visited in order (1-4).
+                if (top + 4 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                top = node.pushChildren(stack, top);
+            }
+        }
+    }
+
+    /**
+     * Returns whether there is a point other than self within the circle, stopping at the first one found.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     * @param self The point to ignore (compared by identity), such as the point at the center of the circle.
+     */
+    public boolean anyInCircleExcept(double cx, double cy, double cr, E self)
+    {
+        Node<E> start = root.get();
+        if (start == null) return false;
+
+        Node<E>[] stack = newStack();
+        int top = 0;
+        stack[top++] = start;
+
+        while (top > 0)
+        {
+            Node<E> node = stack[--top];
+
+            if (Geometry.circleIntersectsRectangle(cx, cy, cr, node.x1, node.y1, node.x2, node.y2))
+            {
+                if (node.point != self && Geometry.pointInCircle(node.px, node.py, cx, cy, cr)) return true;
+
+                if (top + 4 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                top = node.pushChildren(stack, top);
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Finds all points within the rectangle (not on its edges, as in GeometryExtra.pointInRectangle).
+     *
+     * @param rx1 Top left x coordinate of rectangle.
+     * @param ry1 Top left y coordinate of rectangle.
+     * @param rx2 Bottom right x coordinate of rectangle.
+     * @param ry2 Bottom right y coordinate of rectangle.
+     *
+     * @return The points in the rectangle.
+     */
+    public List<E> findInRectangle(double rx1, double ry1, double rx2, double ry2)
+    {
+        List<E> pointsInRectangle = new ArrayList<>();
+        Node<E> start = root.get();
+        if (start == null) return pointsInRectangle;
+
+        Node<E>[] stack = newStack();
+        int top = 0;
+        stack[top++] = start;
+
+        while (top > 0)
+        {
+            Node<E> node = stack[--top];
+
+            // Skipping regions which do not overlap the rectangle (points on its edges are not within it).
+            if (!GeometryExtra.rectangleIntersectsRectangle(node.x1, node.y1, node.x2, node.y2, rx1, ry1, rx2, ry2)) continue;
+
+            if (GeometryExtra.pointInRectangle(node.px, node.py, rx1, ry1, rx2, ry2)) pointsInRectangle.add(node.point);
+
+            if (top + 4 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+            top = node.pushChildren(stack, top);
+        }
+
+        return pointsInRectangle;
+    }
+
+    // Helper Methods
+
+    /**
+     * Returns a fresh stack for a traversal.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <E extends Point2D> Node<E>[] newStack()
+    {
+        return (Node<E>[]) new Node[64];
+    }
+
+    /**
+     * A node: a point at the location it had when inserted, its region, and its four child slots.
+     */
+    private static final class Node<E extends Point2D>
+    {
+        volatile E point; // The point anchoring this node (replaced by a later point at the same location).
+        final double px, py; // The location of the point (where the node splits its region into quadrants).
+        final double x1, y1, x2, y2; // The region of the node.
+        final AtomicReferenceArray<Node<E>> children = new AtomicReferenceArray<>(4); // Children in quadrants 1-4.
+
+        Node(E point, double px, double py, double x1, double y1, double x2, double y2)
+        {
+            this.point = point;
+            this.px = px;
+            this.py = py;
+            this.x1 = x1;
+            this.y1 = y1;
+            this.x2 = x2;
+            this.y2 = y2;
+        }
+
+        /**
+         * Returns the quadrant (1-4) in which the location belongs, or 0 if it is at the node's point (as in PointQuadtree).
+         */
+        int quadrant(double x, double y)
+        {
+            if (x == px && y == py) return 0;
+            if (x >= px && y <= py) return 1;
+            if (x <= px && y <= py) return 2;
+            if (x <= px && y >= py) return 3;
+            return 4;
+        }
+
+        /**
+         * Pushes the children onto the stack in reverse (4-1), so they are popped in order (1-4), returning the new top.
+         */
+        int pushChildren(Node<E>[] stack, int top)
+        {
+            for (int quadrant = 3; quadrant >= 0; quadrant -= 1)
+            {
+                Node<E> child = children.get(quadrant);
+                if (child != null) stack[top++] = child;
+            }
+            return top;
+        }
+    }
+
+    /**
+     * Stress test, then throughput benchmark, of concurrent inserts.
+     */
+    public static void main(String[] args) throws InterruptedException
+    {
+        stressTest(8, 50000);
+
+        // Benchmark: the same random dots inserted by 1-32 threads, against one PointQuadtree behind a single lock.
+        int numDots = 2000000;
+        System.out.println("Threads, Concurrent (Inserts/Second), Locked (Inserts/Second)");
+
+        for (int numThreads = 1; numThreads <= 32; numThreads *= 2)
+        {
+            List<List<Dot>> batches = randomBatches(numThreads, numDots / numThreads, new Random(numThreads));
+
+            ConcurrentPointQuadtree<Dot> concurrent = new ConcurrentPointQuadtree<>(0, 0, 800, 600);
+            double concurrentSeconds = runThreads(batches, concurrent::insert);
+
+            PointQuadtree<Dot> locked = new PointQuadtree<>(0, 0, 800, 600);
+            double lockedSeconds = runThreads(batches, dot ->
+            {
+                synchronized (locked)
+                {
+                    locked.insert(dot);
+                }
+            });
+
+            System.out.println(numThreads + ", " + (long) (numDots / concurrentSeconds) + ", " + (long) (numDots / lockedSeconds));
+        }
+    }
+
+    /**
+     * Helper for main -> Inserts random dots from several threads at once (each also re-inserting a few dots at the
+     * locations of others', and querying as it goes), then checks that no insert was lost.
+     */
+    private static void stressTest(int numThreads, int dotsPerThread) throws InterruptedException
+    {
+        // Coordinates on a coarse grid, so threads often race for the same slot or the same location.
+        List<List<Dot>> batches = new ArrayList<>();
+        Random random = new Random(1);
+        for (int t = 0; t < numThreads; t += 1)
+        {
+            List<Dot> batch = new ArrayList<>();
+            for (int i = 0; i < dotsPerThread; i += 1)
+            {
+                batch.add(new Dot(random.nextInt(800), random.nextInt(600)));
+            }
+            batches.add(batch);
+        }
+
+        ConcurrentPointQuadtree<Dot> tree = new ConcurrentPointQuadtree<>(0, 0, 800, 600);
+        runThreads(batches, dot ->
+        {
+            tree.insert(dot);
+            if (dot.getX() < 8) tree.anyInCircleExcept(dot.getX(), dot.getY(), 10, dot); // Reading while others write.
+        });
+
+        // Every location inserted must be held exactly once, by one of the dots inserted there.
+        Set<Dot> inserted = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Long> locations = new HashSet<>();
+        for (List<Dot> batch : batches)
+        {
+            inserted.addAll(batch);
+            for (Dot dot : batch)
+            {
+                locations.add((long) dot.getX() * 1000 + (long) dot.getY());
+            }
+        }
+
+        int missing = 0;
+        for (List<Dot> batch : batches)
+        {
+            for (Dot dot : batch)
+            {
+                List<Dot> found = tree.findInCircle(dot.getX(), dot.getY(), 0);
+                if (found.size() != 1 || !inserted.contains(found.get(0))) missing += 1;
+            }
+        }
+
+        boolean passed = missing == 0 && tree.allPoints().size() == locations.size() && tree.size() == locations.size();
+        System.out.println("Stress Test: " + numThreads + " Threads, " + locations.size() + " Locations, " + tree.size()
+                + " Points, " + missing + " Missing -> " + (passed ? "Passed" : "FAILED"));
+    }
+
+    /**
+     * Helper for main -> Builds a batch of random dots for each thread.
+     */
+    private static List<List<Dot>> randomBatches(int numThreads, int dotsPerThread, Random random)
+    {
+        List<List<Dot>> batches = new ArrayList<>();
+        for (int t = 0; t < numThreads; t += 1)
+        {
+            List<Dot> batch = new ArrayList<>();
+            for (int i = 0; i < dotsPerThread; i += 1)
+            {
+                batch.add(new Dot(random.nextDouble() * 800, random.nextDouble() * 600));
+            }
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Helper for main -> Passes each batch to the action on its own thread, returning the seconds until all are done.
+     */
+    private static double runThreads(List<List<Dot>> batches, Consumer<Dot> action) throws InterruptedException
+    {
+        Thread[] threads = new Thread[batches.size()];
+        for (int t = 0; t < threads.length; t += 1)
+        {
+            List<Dot> batch = batches.get(t);
+            threads[t] = new Thread(() ->
+            {
+                for (Dot dot : batch)
+                {
+                    action.accept(dot);
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : threads)
+        {
+            thread.start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+}
@@ -1,6 +1,17 @@
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.swing.*;
 
 /**
@@ -16,12 +27,14 @@ public class DotTreeGUI extends DrawingGUI
 {
     private static final int width = 800, height = 600; // Size of the universe.
     private static final int dotRadius = 5; // To draw a dot, so it is visible.
+    private static final int numNearest = 5; // How many dots to find nearest the mouse (when querying nearest).
 
     // To color the different levels differently.
     private static final Color[] rainbow = {Color.RED, Color.ORANGE, Color.YELLOW, Color.GREEN, Color.BLUE, Color.MAGENTA};
 
-    private PointQuadtree<Dot> tree = null; // Holds the dots.
-    private char mode = 'a'; // 'a': Adding; 'q': Querying with the mouse.
+    private SpatialIndex<Dot> tree = null; // Holds the dots.
+    private String engine = System.getProperty("index", "quadtree"); // Which index engine holds added dots (see SpatialIndex.create).
+    private char mode = 'a'; // 'a': Adding; 'q': Querying with the mouse; 'n': Querying nearest the mouse.
     private int mouseX, mouseY; // Current mouse location (when querying).
     private int mouseRadius = 10; // Circle around mouse location (for querying).
     private boolean trackMouse = false; // If true, then print out where the mouse is as it moves.
@@ -65,10 +78,11 @@ public class DotTreeGUI extends DrawingGUI
                 tree.insert(new Dot(x, y));
             }
 
-            //  If the PointQuadtree does not exist (is null), we initialize a new PointQuadtree using the dot.
+            //  If the index does not exist (is null), we initialize a new index with the dot.
             else
             {
-                tree = new PointQuadtree<>(new Dot(x, y), 0, 0, width, height);
+                tree = SpatialIndex.create(engine, 0, 0, width, height, 2 * mouseRadius);
+                tree.insert(new Dot(x, y));
             }
         }
 
@@ -85,12 +99,23 @@ public class DotTreeGUI extends DrawingGUI
                 // Checking to make sure the PointQuadtree is not equal to null.
                 if (tree != null)
                 {
-                    // Setting found to what the tree says is near the mouse press.
-                    found = tree.findInCircle(x, y, mouseRadius);
+                    // Setting found to what the tree says is near the mouse press (a large point quadtree searches on all cores).
+                    if (tree instanceof PointQuadtree) found = ((PointQuadtree<Dot>) tree).findInCircleParallel(x, y, mouseRadius);
+                    else found = tree.findInCircle(x, y, mouseRadius);
                 }
             }
         }
 
+        else if (mode == 'n')
+        {
+            // Checking to make sure the PointQuadtree is not equal to null.
+            if (tree != null)
+            {
+                // Setting found to the dots the tree says are nearest the mouse press.
+                found = tree.nearest(x, y, numNearest);
+            }
+        }
+
         else
         {
             System.out.println("Clicked At: " + x + ", " + y);
@@ -158,11 +183,11 @@ public class DotTreeGUI extends DrawingGUI
         tree.insert(new Dot(250, 550)); // C
 
         int bad = 0;
-        bad += testFind(0, 0, 900, 3, 3, 3); // Rectangle for all; circle for all; find all.
+        bad += testFind(0, 0, 900, 1, 0, 3); // Rectangle for A; all inside the circle; find all.
         bad += testFind(400, 300, 10, 3, 2, 1); // Rectangle for all; circle for A,B; find A.
         bad += testFind(150, 450, 10, 3, 3, 1); // Rectangle for all; circle for all; find B.
         bad += testFind(250, 550, 10, 3, 3, 1); // Rectangle for all; circle for all; find C.
-        bad += testFind(150, 450, 200, 3, 3, 2); // Rectangle for all; circle for all; find B, C.
+        bad += testFind(150, 450, 200, 2, 1, 2); // Rectangle for A, B; circle for A; B [C] inside the circle; find B, C.
         bad += testFind(140, 440, 10, 3, 2, 0); // Rectangle for all; circle for A,B; find none.
         bad += testFind(750, 550, 10, 2, 1, 0); // Rectangle for A,B; circle for A; find none.
 
@@ -193,8 +218,8 @@ public class DotTreeGUI extends DrawingGUI
         bad += testFind(150, 450, 10, 6, 3, 1); // Rectangle for A [D] [E] [B [C]] [K]; circle for A, B, C; find B.
         bad += testFind(500, 125, 10, 8, 3, 1); // Rectangle for A [D [G F H]] [E] [B] [K]; circle for A, D, G; find G.
         bad += testFind(300, 400, 15, 10, 6, 2); // Rectangle for A [D [G F H]] [E] [B [C]] [K [L]]; circle for A,D,E,B,K,L; find A,L.
-        bad += testFind(495, 225, 50, 10, 6, 3); // Rectangle for A [D [G F H [I [J]]]] [E] [B] [K]; circle for A,D,G,H,I,J; find H,I,J
-        bad += testFind(0, 0, 900, 12, 12, 12); // Rectangle for all; circle for all; find all.
+        bad += testFind(495, 225, 50, 8, 3, 3); // Rectangle for A [D [G F H]] [E] [B] [K]; circle for A, D, G; H [I [J]] inside the circle; find H,I,J
+        bad += testFind(0, 0, 900, 1, 0, 12); // Rectangle for A; all inside the circle; find all.
 
         if (bad == 0) System.out.println("Test 1 Passed!");
     }
@@ -209,11 +234,11 @@ public class DotTreeGUI extends DrawingGUI
         tree.insert(new Dot(700, 100)); // E
 
         int bad = 0;
-        // Rectangle for all; circle for all; find all.
-        bad += testFind(400, 300, 900, 5, 5, 5);
+        // Rectangle for A; all inside the circle; find all.
+        bad += testFind(400, 300, 900, 1, 0, 5);
 
         // Other Test Cases
-        bad += testFind(650, 150, 100, 5, 5, 2);
+        bad += testFind(650, 150, 100, 4, 3, 2);
         bad += testFind(70, 500, 70, 3,2,1);
         bad += testFind(250, 300, 50, 4,3,0);
         bad += testFind(400, 200, 20, 5,4,0);
@@ -221,76 +246,1902 @@ public class DotTreeGUI extends DrawingGUI
     }
 
     /**
-     * DrawingGUI Method -> Here toggling the mode between 'a' and 'q' and increasing/decreasing mouseRadius via +/-.
+     * Test 3 -> OffHeapQuadtree, checked against a scan of the same random dots (each inserted with its index as its id).
+     * Some dots land on the location of an earlier dot, whose id they replace. The native memory grows with the tree.
      */
-    @Override
-    public void handleKeyPress(char key)
+    private void test3()
     {
-        if (key == 'a' || key == 'q') mode = key;
+        found = null;
+        Random random = new Random(50);
 
-        else if (key == '+')
+        List<Dot> dots = new ArrayList<>(); // Each dot, at the index of its id.
+        List<Dot> live = new ArrayList<>(); // The dots whose ids the tree still holds.
+        OffHeapQuadtree offHeapTree = new OffHeapQuadtree(0, 0, width, height);
+
+        for (int i = 0; i < 20000; i += 1)
         {
-            mouseRadius += 10;
+            Dot dot;
+
+            // One dot in twenty replaces an earlier dot, at the same location.
+            if (!live.isEmpty() && random.nextInt(20) == 0)
+            {
+                Dot earlier = live.remove(random.nextInt(live.size()));
+                dot = new Dot(earlier.getX(), earlier.getY());
+            }
+
+            else
+            {
+                dot = new Dot(random.nextDouble() * width, random.nextDouble() * height);
+            }
+
+            dots.add(dot);
+            live.add(dot);
+            offHeapTree.insert(i, dot.getX(), dot.getY());
         }
 
-        else if (key == '-')
+        int bad = 0;
+        if (offHeapTree.size() != live.size())
         {
-            mouseRadius -= 10;
-            if (mouseRadius < 0) mouseRadius = 0;
+            bad += 1;
+            System.err.println("Test 3: Wrong Size, Got " + offHeapTree.size() + " but expected " + live.size());
         }
 
-        else if (key == 'm')
+        // The first chunk grew (from 1024 nodes, doubling) to 32768 nodes of 72 bytes, rather than starting at 2^20 nodes.
+        if (offHeapTree.nativeBytes() != 32768 * 72 || new OffHeapQuadtree(0, 0, width, height).nativeBytes() != 0)
         {
-            trackMouse = !trackMouse;
+            bad += 1;
+            System.err.println("Test 3: Wrong Native Bytes, Got " + offHeapTree.nativeBytes() + " but expected " + 32768 * 72);
         }
 
-        else if (key == '0')
+        for (int i = 0; i < 500; i += 1)
         {
-            test0();
+            double x = random.nextDouble() * width, y = random.nextDouble() * height, r = random.nextDouble() * 100;
+
+            bad += testSame("Test 3, Circle", byId(dots, offHeapTree.findInCircle(x, y, r)), scanCircle(live, x, y, r));
+            bad += testSame("Test 3, Rectangle", byId(dots, offHeapTree.findInRectangle(x - r, y - r, x + r, y + r)),
+                    scanRectangle(live, x - r, y - r, x + r, y + r));
         }
 
-        else if (key == '1')
+        if (bad == 0) System.out.println("Test 3 Passed!");
+    }
+
+    /**
+     * Test 4 -> LinearQuadtree, built by sorting and grown by insert, checked against a scan of the same random dots.
+     * Some dots are at the location of another dot (all of which are kept), and some are outside the rectangle.
+     */
+    private void test4()
+    {
+        found = null;
+        Random random = new Random(60);
+
+        List<Dot> dots = new ArrayList<>();
+        for (int i = 0; i < 20000; i += 1)
         {
-            test1();
+            dots.add(new Dot(random.nextDouble() * width, random.nextDouble() * height));
         }
 
-        else if (key == '2')
+        for (int i = 0; i < 200; i += 1)
         {
-            test2();
+            Dot other = dots.get(random.nextInt(dots.size()));
+            dots.add(new Dot(other.getX(), other.getY()));
         }
 
-        repaint();
+        for (int i = 0; i < 100; i += 1)
+        {
+            dots.add(new Dot(random.nextDouble() * (width + 100) - 50, random.nextDouble() * (height + 100) - 50));
+        }
+
+        LinearQuadtree<Dot> builtTree = LinearQuadtree.build(dots, 0, 0, width, height);
+        LinearQuadtree<Dot> insertedTree = new LinearQuadtree<>(0, 0, width, height);
+        for (Dot dot : dots)
+        {
+            insertedTree.insert(dot);
+        }
+
+        int bad = 0;
+        bad += testQueries("Test 4, Build", builtTree, dots, random, 500);
+        bad += testQueries("Test 4, Insert", insertedTree, dots, random, 500);
+
+        if (bad == 0) System.out.println("Test 4 Passed!");
+        tree = builtTree;
     }
 
     /**
-     * DrawingGUI Method -> Here drawing the quadtree and if in query mode, the mouse location and any found dots.
+     * Test 5 -> CircleQuadtree, checked against a scan of the same random blobs (a few large, the rest small, with a
+     * tight cluster and some at the same centers as others) over 30 steps of moving, growing, shrinking and removing them.
      */
-    @Override
-    public void draw(Graphics g)
+    private void test5()
     {
-        // Drawing the PointQuadtree if it is not null.
-        if (tree != null) drawTree(g, tree, 0);
+        found = null;
+        Random random = new Random(70);
 
-        // If we are querying with the mouse...
-        if (mode == 'q')
+        int bad = 0;
+        List<Blob> blobs = new ArrayList<>();
+        CircleQuadtree<Blob> circleTree = new CircleQuadtree<>(0, 0, width, height);
+        for (int i = 0; i < 5000; i += 1)
         {
-            // Setting the color of the graphics to black and displaying the circle around the mouse.
-            g.setColor(Color.BLACK);
-            g.drawOval(mouseX - mouseRadius, mouseY - mouseRadius, 2 * mouseRadius, 2 * mouseRadius);
+            double r = i < 20 ? 50 + random.nextDouble() * 150 : 0.5 + random.nextDouble() * 3;
+            Blob blob = new Blob(random.nextDouble() * width, random.nextDouble() * height, r);
+            blobs.add(blob);
+            circleTree.insert(blob);
+        }
 
-            // Checking to make sure found it not equal to null.
-            if (found != null)
+        // A tight cluster (which the tree compresses, with a few large blobs arriving among small ones), small blobs
+        // just outside it (which expand it again), and blobs at the same centers as others (which are all kept).
+        double clusterX = width / 3.0, clusterY = height / 3.0;
+        for (int i = 0; i < 400; i += 1)
+        {
+            Blob blob;
+            if (i < 200) blob = new Blob(clusterX + random.nextDouble() * 1e-6, clusterY + random.nextDouble() * 1e-6, i % 20 == 19 ? 40 : 1);
+            else if (i < 300) blob = new Blob(clusterX + random.nextDouble() * 4 - 2, clusterY + random.nextDouble() * 4 - 2, 0.5);
+            else blob = new Blob(blobs.get(i).getX(), blobs.get(i).getY(), 2);
+            blobs.add(blob);
+            circleTree.insert(blob);
+        }
+
+        for (int i = 0; i < 200; i += 1)
+        {
+            double x = clusterX + random.nextDouble() * 120 - 60, y = clusterY + random.nextDouble() * 120 - 60;
+            bad += testSame("Test 5, Cluster", circleTree.findOverlapping(x, y, 1), scanOverlapping(blobs, x, y, 1));
+        }
+
+        // A large blob whose arrival compresses a full leaf of small ones (with two blobs per leaf): the compressed
+        // leaf is widened for it, so a query reaching only the large blob still finds it.
+        CircleQuadtree<Blob> smallTree = new CircleQuadtree<>(0, 0, 100, 100, 2);
+        List<Blob> smallBlobs = Arrays.asList(new Blob(10, 10, 1), new Blob(90, 90, 1), new Blob(11, 11, 1), new Blob(12, 12, 40));
+        for (Blob blob : smallBlobs)
+        {
+            smallTree.insert(blob);
+        }
+        bad += testSame("Test 5, Compressed", smallTree.findOverlapping(50, 12, 1), scanOverlapping(smallBlobs, 50, 12, 1));
+
+        if (circleTree.size() != blobs.size())
+        {
+            bad += 1;
+            System.err.println("Test 5, Size: Got " + circleTree.size() + " but expected " + blobs.size());
+        }
+
+        for (int step = 0; step < 30; step += 1)
+        {
+            // Removing one blob in a hundred.
+            for (int i = blobs.size() - 1; i >= 0; i -= 1)
             {
-                // Setting the color of the graphics to black.
-                g.setColor(Color.BLACK);
+                if (random.nextInt(100) == 0) circleTree.remove(blobs.remove(i));
+            }
 
-                // Cycling through the dots in the list of "found" points.
-                for (Dot dot : found)
+            // Moving each blob a little (staying in the region), and growing or shrinking it.
+            for (Blob blob : blobs)
+            {
+                double oldX = blob.getX(), oldY = blob.getY();
+                blob.setX(Math.min(Math.max(oldX + random.nextDouble() * 10 - 5, 0), width));
+                blob.setY(Math.min(Math.max(oldY + random.nextDouble() * 10 - 5, 0), height));
+                blob.setR(blob.getR() * (0.9 + random.nextDouble() * 0.2));
+                circleTree.update(blob, oldX, oldY);
+            }
+
+            if (step % 10 == 9) circleTree.tightenRadii();
+
+            for (int i = 0; i < 200; i += 1)
+            {
+                double x = random.nextDouble() * width, y = random.nextDouble() * height, r = random.nextDouble() * 20;
+                bad += testSame("Test 5, Overlapping", circleTree.findOverlapping(x, y, r), scanOverlapping(blobs, x, y, r));
+
+                // A random blob, which may or may not overlap another (the large ones nearly always do).
+                Blob blob = blobs.get(random.nextInt(blobs.size()));
+                boolean expected = false;
+                for (Blob other : blobs)
                 {
-                    g.fillOval((int) dot.getX() - dotRadius, (int) dot.getY() - dotRadius, 2 * dotRadius, 2 * dotRadius);
+                    if (other != blob && Geometry.pointInCircle(other.getX(), other.getY(), blob.getX(), blob.getY(), blob.getR() + other.getR())) expected = true;
+                }
+
+                if (circleTree.anyOverlappingExcept(blob) != expected)
+                {
+                    bad += 1;
+                    System.err.println("Test 5, Any Overlapping: Got " + !expected + " but expected " + expected + " at " + blob.getX() + ", " + blob.getY());
+                }
+            }
+
+            bad += testQueries("Test 5, Centers", circleTree, blobs, random, 200);
+        }
+
+        if (bad == 0) System.out.println("Test 5 Passed!");
+    }
+
+    /**
+     * Test 6 -> PersistentQuadtree, checked against the live dots after random inserts, removes and moves (on a 200 x 200
+     * grid, so many dots land on others: an inserted dot replaces the other, and a moved dot is left out), keeping some of
+     * the versions along the way; then queried by reader threads while a writer thread publishes new versions.
+     */
+    private void test6()
+    {
+        found = null;
+        Random random = new Random(80);
+
+        Dot[][] grid = new Dot[200][200]; // The live dot at each location of the grid, if any.
+        int numLive = 0;
+
+        PersistentQuadtree<Dot> version = new PersistentQuadtree<>(0, 0, width, height);
+        List<PersistentQuadtree<Dot>> versions = new ArrayList<>(); // Versions kept along the way.
+        List<List<Dot>> versionDots = new ArrayList<>(); // The dots each kept version held when it was made.
+
+        int bad = 0;
+        for (int op = 0; op < 20000; op += 1)
+        {
+            int i = random.nextInt(200), j = random.nextInt(200), choice = random.nextInt(10);
+
+            // Inserting a new dot (replacing any dot at its location).
+            if (choice < 4 || numLive == 0)
+            {
+                Dot dot = new Dot(i * 4, j * 3);
+                if (grid[i][j] == null) numLive += 1;
+                grid[i][j] = dot;
+                version = version.insert(dot);
+            }
+
+            else
+            {
+                // Finding a live dot.
+                while (grid[i][j] == null)
+                {
+                    i = random.nextInt(200);
+                    j = random.nextInt(200);
+                }
+                Dot dot = grid[i][j];
+                grid[i][j] = null;
+
+                // Removing it.
+                if (choice < 7)
+                {
+                    numLive -= 1;
+                    version = version.remove(dot);
+                }
+
+                // Moving it (leaving it out if another dot is at its new location).
+                else
+                {
+                    int ni = random.nextInt(200), nj = random.nextInt(200);
+                    if (grid[ni][nj] == null) grid[ni][nj] = dot;
+                    else numLive -= 1;
+
+                    dot.setX(ni * 4);
+                    dot.setY(nj * 3);
+                    version = version.update(dot, i * 4, j * 3);
+                }
+            }
+
+            if (version.size() != numLive)
+            {
+                bad += 1;
+                System.err.println("Test 6: Wrong Size, Got " + version.size() + " but expected " + numLive);
+            }
+
+            // Every 500 operations, checking the version against the live dots, and keeping it.
+            if (op % 500 == 499)
+            {
+                List<Dot> live = new ArrayList<>();
+                for (Dot[] column : grid)
+                {
+                    for (Dot dot : column)
+                    {
+                        if (dot != null) live.add(dot);
+                    }
+                }
+
+                bad += testSame("Test 6, Version", version.allPoints(), live);
+                versions.add(version);
+                versionDots.add(live);
+
+                for (int q = 0; q < 20; q += 1)
+                {
+                    double x = random.nextDouble() * width, y = random.nextDouble() * height, r = random.nextDouble() * 100;
+                    bad += testSame("Test 6, Circle", version.findInCircle(x, y, r), scanCircle(live, x, y, r));
+                    bad += testSame("Test 6, Rectangle", version.findInRectangle(x - r, y - r, x + r, y + r),
+                            scanRectangle(live, x - r, y - r, x + r, y + r));
+                }
+            }
+        }
+
+        // The kept versions still hold exactly the dots they held when they were made.
+        for (int v = 0; v < versions.size(); v += 1)
+        {
+            bad += testSame("Test 6, Kept Version " + v, versions.get(v).allPoints(), versionDots.get(v));
+        }
+
+        bad += testReaders(random);
+
+        if (bad == 0) System.out.println("Test 6 Passed!");
+    }
+
+    /**
+     * Test 7 -> BufferedQuadtree (with the default buffer, and with a buffer of 3000 dots scanning up to 100000), checked
+     * against a scan of the live dots over rounds of random inserts, removes and moves, before and after merging. Then the
+     * buffered dots keep their order through removals, and a remove past the scan limit merges the buffer first, as does
+     * an update of a merged dot (while an update of a buffered dot does not).
+     */
+    private void test7()
+    {
+        found = null;
+        Random random = new Random(90);
+
+        int bad = 0;
+        bad += testBuffered("Test 7, Default", new BufferedQuadtree<>(new PointQuadtree<>(0, 0, width, height)), random);
+        bad += testBuffered("Test 7, Scanning", new BufferedQuadtree<>(new PointQuadtree<>(0, 0, width, height), 3000, 100000), random);
+
+        // Removing buffered dots leaves the rest in the order they were inserted, found after the merged dots.
+        BufferedQuadtree<Dot> orderedTree = new BufferedQuadtree<>(new PointQuadtree<>(0, 0, width, height), 1000, 50);
+        List<Dot> merged = new ArrayList<>(), buffered = new ArrayList<>();
+        for (int i = 0; i < 100; i += 1)
+        {
+            Dot dot = new Dot(random.nextDouble() * width, random.nextDouble() * height);
+            merged.add(dot);
+            orderedTree.insert(dot);
+        }
+        orderedTree.flush();
+
+        for (int i = 0; i < 40; i += 1)
+        {
+            Dot dot = new Dot(random.nextDouble() * width, random.nextDouble() * height);
+            orderedTree.insert(dot);
+            buffered.add(dot);
+        }
+        for (int i = 39; i >= 0; i -= 3)
+        {
+            orderedTree.remove(buffered.remove(i));
+        }
+
+        List<Dot> all = orderedTree.findInCircle(0, 0, width + height);
+        if (!all.subList(merged.size(), all.size()).equals(buffered) || orderedTree.getBuffered() != buffered.size())
+        {
+            bad += 1;
+            System.err.println("Test 7, Order: Got the buffered dots " + all.subList(Math.min(merged.size(), all.size()), all.size()) + " but expected " + buffered);
+        }
+
+        // With more than the scan limit (50) buffered, removing a merged dot merges the buffer first.
+        for (int i = 0; i < 20; i += 1)
+        {
+            orderedTree.insert(new Dot(random.nextDouble() * width, random.nextDouble() * height));
+        }
+        if (!orderedTree.remove(merged.get(0)) || orderedTree.getBuffered() != 0)
+        {
+            bad += 1;
+            System.err.println("Test 7, Remove: Got " + orderedTree.getBuffered() + " buffered dots but expected 0");
+        }
+
+        // With more than the scan limit buffered, moving a buffered dot updates it in place (merging first would insert
+        // it at its new location), and moving a merged dot merges the buffer first.
+        List<Dot> moved = new ArrayList<>();
+        for (int i = 0; i < 60; i += 1)
+        {
+            Dot dot = new Dot(random.nextInt(width), random.nextInt(height / 2));
+            orderedTree.insert(dot);
+            moved.add(dot);
+        }
+        moved.add(merged.get(1));
+
+        for (Dot dot : moved.subList(moved.size() - 2, moved.size()))
+        {
+            double oldX = dot.getX(), oldY = dot.getY();
+            dot.setX(random.nextInt(width));
+            dot.setY(height / 2 + 1 + random.nextInt(height / 2 - 1)); // Away from the other buffered dots.
+
+            if (!orderedTree.update(dot, oldX, oldY) || !orderedTree.findInCircle(dot.getX(), dot.getY(), 0).contains(dot))
+            {
+                bad += 1;
+                System.err.println("Test 7, Update: Lost " + dot + " moved from (" + oldX + ", " + oldY + ")");
+            }
+        }
+        if (orderedTree.getBuffered() != 0)
+        {
+            bad += 1;
+            System.err.println("Test 7, Update: Got " + orderedTree.getBuffered() + " buffered dots but expected 0");
+        }
+
+        if (bad == 0) System.out.println("Test 7 Passed!");
+    }
+
+    /**
+     * Test 8 -> PRQuadtree path compression, in 18 trials (capacities 1, 2 and 8) of 3000 dots in tight clusters (spread
+     * 0.001 or 5 pixels, with some spread evenly). After inserting them, no node below the root is left holding its points
+     * in a single child, and every dot is within its leaf's region; after rounds of moves, removes and inserts, the queries
+     * (some with tiny radii) find the same dots as a scan. Dots moved onto other dots are dropped, keeping the other dots.
+     */
+    private void test8()
+    {
+        found = null;
+        Random random = new Random(100);
+
+        int bad = 0;
+        for (int trial = 0; trial < 18; trial += 1)
+        {
+            int capacity = new int[] {1, 2, 8}[trial % 3];
+            double spread = trial % 6 < 3 ? 0.001 : 5;
+            String which = "Test 8, Capacity " + capacity + ", Spread " + spread;
+
+            PRQuadtree<Dot> prTree = new PRQuadtree<>(0, 0, width, height, capacity);
+            List<Dot> live = new ArrayList<>();
+            for (int i = 0; i < 3000; i += 1)
+            {
+                Dot dot = clusteredDot(random, spread);
+                live.add(dot);
+                prTree.insert(dot);
+            }
+
+            bad += testCompressed(which, prTree, true);
+
+            for (int round = 0; round < 5; round += 1)
+            {
+                for (int i = 0; i < 200; i += 1)
+                {
+                    Dot dot = live.get(random.nextInt(live.size()));
+                    double oldX = dot.getX(), oldY = dot.getY();
+                    dot.setX(Math.min(Math.max(oldX + (random.nextDouble() - 0.5) * spread, 0), width));
+                    dot.setY(Math.min(Math.max(oldY + (random.nextDouble() - 0.5) * spread, 0), height));
+                    prTree.update(dot, oldX, oldY);
+                }
+
+                // Moving dots onto other dots (the nearest, often in the same leaf, or any), which drops the moved dots.
+                for (int i = 0; i < 20; i += 1)
+                {
+                    Dot dot = live.remove(random.nextInt(live.size()));
+                    Dot other = live.get(random.nextInt(live.size()));
+                    if (i % 2 == 0)
+                    {
+                        for (Dot candidate : live)
+                        {
+                            if (distanceSquared(candidate, dot.getX(), dot.getY()) < distanceSquared(other, dot.getX(), dot.getY())) other = candidate;
+                        }
+                    }
+
+                    double oldX = dot.getX(), oldY = dot.getY();
+                    dot.setX(other.getX());
+                    dot.setY(other.getY());
+                    if (prTree.update(dot, oldX, oldY))
+                    {
+                        bad += 1;
+                        System.err.println(which + ", Move Onto Another Dot: Got true but expected false");
+                    }
+                }
+
+                for (int i = 0; i < 200; i += 1)
+                {
+                    prTree.remove(live.remove(random.nextInt(live.size())));
+                }
+
+                for (int i = 0; i < 200; i += 1)
+                {
+                    Dot dot = clusteredDot(random, spread);
+                    live.add(dot);
+                    prTree.insert(dot);
+                }
+
+                bad += testQueries(which, prTree, live, random, 20);
+
+                // Tiny circles around the dots, within their clusters.
+                for (int i = 0; i < 20; i += 1)
+                {
+                    Dot self = live.get(random.nextInt(live.size()));
+                    double r = random.nextDouble() * 0.01;
+
+                    bad += testSame(which + ", Tiny Circle", prTree.findInCircle(self.getX(), self.getY(), r),
+                            scanCircle(live, self.getX(), self.getY(), r));
+
+                    boolean expected = scanCircle(live, self.getX(), self.getY(), r).size() > 1;
+                    if (prTree.anyInCircleExcept(self.getX(), self.getY(), r, self) != expected)
+                    {
+                        bad += 1;
+                        System.err.println(which + ", Any In Circle: Got " + !expected + " but expected " + expected);
+                    }
+                }
+            }
+        }
+
+        if (bad == 0) System.out.println("Test 8 Passed!");
+    }
+
+    /**
+     * Test 9 -> PointQuadtree rebalancing, with balance factors of 0.55, 0.7 and 0.9 (5 trials each). Dots are inserted in
+     * 20 rounds drifting from left to right (on whole pixels, so some replace others), one at a time and in batches
+     * through insertAll, with removes and moves. After each round, the counts, boxes and routing are valid, circle queries
+     * find the same dots as a scan, and the depth stays within log(n) / log(1 / factor) + 3. On whole pixels of a few
+     * columns, or of an L (where build ties on the median's x-coordinate), fewer than two thirds of the inserts rebuild.
+     */
+    private void test9()
+    {
+        found = null;
+        Random random = new Random(110);
+
+        int bad = 0;
+        for (int trial = 0; trial < 15; trial += 1)
+        {
+            double factor = new double[] {0.55, 0.7, 0.9}[trial % 3];
+            String which = "Test 9, Factor " + factor;
+
+            PointQuadtree<Dot> balancedTree = new PointQuadtree<>(0, 0, width, height);
+            balancedTree.setBalanceFactor(factor);
+            Map<Integer, Dot> grid = new HashMap<>(); // The live dot at each whole pixel (x * 600 + y), if any.
+
+            for (int round = 0; round < 20; round += 1)
+            {
+                // One at a time, then in a batch, each replacing any dot at its location.
+                for (int i = 0; i < 100; i += 1)
+                {
+                    Dot dot = driftingDot(random, round);
+                    grid.put(cell(dot), dot);
+                    balancedTree.insert(dot);
+                }
+
+                List<Dot> batch = new ArrayList<>();
+                for (int i = 0; i < 100; i += 1)
+                {
+                    Dot dot = driftingDot(random, round);
+                    grid.put(cell(dot), dot);
+                    batch.add(dot);
+                }
+                balancedTree.insertAll(batch);
+
+                List<Dot> live = new ArrayList<>(grid.values());
+                for (int i = 0; i < 20; i += 1)
+                {
+                    Dot dot = live.remove(random.nextInt(live.size()));
+                    grid.remove(cell(dot));
+                    balancedTree.remove(dot);
+                }
+
+                // Moving dots, each to a whole pixel no other dot is at.
+                for (int i = 0; i < 20; i += 1)
+                {
+                    Dot dot = live.remove(random.nextInt(live.size()));
+                    double oldX = dot.getX(), oldY = dot.getY();
+                    grid.remove(cell(dot));
+
+                    do
+                    {
+                        dot.setX(random.nextInt(width));
+                        dot.setY(random.nextInt(height));
+                    }
+                    while (grid.containsKey(cell(dot)));
+
+                    grid.put(cell(dot), dot);
+                    balancedTree.update(dot, oldX, oldY);
+                }
+
+                live = new ArrayList<>(grid.values());
+                bad += testValid(which, balancedTree, live);
+
+                for (int i = 0; i < 20; i += 1)
+                {
+                    double x = random.nextDouble() * width, y = random.nextDouble() * height, r = random.nextDouble() * 100;
+                    bad += testSame(which + ", Circle", balancedTree.findInCircle(x, y, r), scanCircle(live, x, y, r));
+                }
+
+                double maxDepth = Math.log(live.size()) / Math.log(1 / factor) + 3;
+                if (balancedTree.depth() > maxDepth)
+                {
+                    bad += 1;
+                    System.err.println(which + ": Too Deep, Got " + balancedTree.depth() + " but expected at most " + maxDepth);
                 }
             }
         }
+
+        // Dots on whole pixels of two or three columns, or of a column and a row (an L), where build ties on the median's
+        // x-coordinate: half are built, and the rest inserted in random order.
+        for (int shape = 0; shape < 3; shape += 1)
+        {
+            for (double factor : new double[] {0.55, 0.7, 0.9})
+            {
+                String which = "Test 9, Grid " + shape + ", Factor " + factor;
+
+                // Every other pixel along each column (and along the row) is built.
+                List<Dot> built = new ArrayList<>(), inserted = new ArrayList<>();
+                for (int x = 100; x < (shape == 2 ? 101 : 102 + shape); x += 1)
+                {
+                    for (int y = 0; y < height; y += 1)
+                    {
+                        (y % 2 == 0 ? built : inserted).add(new Dot(x, y));
+                    }
+                }
+                for (int x = 101; shape == 2 && x <= 300; x += 1)
+                {
+                    (x % 2 == 0 ? built : inserted).add(new Dot(x, 0));
+                }
+
+                List<Dot> dots = new ArrayList<>(built);
+                dots.addAll(inserted);
+                Collections.shuffle(inserted, random);
+
+                PointQuadtree<Dot> gridTree = PointQuadtree.build(built, 0, 0, width, height);
+                gridTree.setBalanceFactor(factor);
+                for (Dot dot : inserted)
+                {
+                    gridTree.insert(dot);
+                }
+
+                // A subtree still unbalanced right after its rebuild would be rebuilt by (nearly) every insert.
+                if (gridTree.getNumRebuilds() > inserted.size() * 2 / 3)
+                {
+                    bad += 1;
+                    System.err.println(which + ": Too Many Rebuilds, Got " + gridTree.getNumRebuilds() + " for " + inserted.size() + " inserts");
+                }
+
+                double maxDepth = Math.log(dots.size()) / Math.log(1 / factor) + 3;
+                if (gridTree.depth() > maxDepth)
+                {
+                    bad += 1;
+                    System.err.println(which + ": Too Deep, Got " + gridTree.depth() + " but expected at most " + maxDepth);
+                }
+
+                bad += testValid(which, gridTree, dots);
+            }
+        }
+
+        // A factor of 0.5 or less (other than 0), or of 1 or more, is rejected.
+        for (double factor : new double[] {-1, 0.3, 0.5, 1})
+        {
+            try
+            {
+                new PointQuadtree<Dot>(0, 0, width, height).setBalanceFactor(factor);
+                bad += 1;
+                System.err.println("Test 9: Factor " + factor + " was not rejected");
+            }
+            catch (IllegalArgumentException e)
+            {
+                // Expected.
+            }
+        }
+
+        if (bad == 0) System.out.println("Test 9 Passed!");
+    }
+
+    /**
+     * Test 10 -> PointQuadtree.update, on 2000 dots at distinct whole pixels (half from build, half inserted after). Of 3000
+     * moves, a third stay inside the region of the dot's node (the dot must keep its node, and the node its children),
+     * a third cross a split line, and a third land on another dot (below the dot's node, or anywhere), which drops the
+     * moved dot and keeps the other. Every 100 moves, the tree holds exactly the live dots, with valid routing, counts
+     * and boxes.
+     */
+    private void test10()
+    {
+        found = null;
+        Random random = new Random(120);
+
+        Map<Integer, Dot> grid = new HashMap<>(); // The dot at each whole pixel (x * 600 + y), to keep them distinct.
+        while (grid.size() < 2000)
+        {
+            Dot dot = new Dot(random.nextInt(width), random.nextInt(height));
+            grid.putIfAbsent(cell(dot), dot);
+        }
+
+        List<Dot> live = new ArrayList<>(grid.values());
+        PointQuadtree<Dot> updatedTree = PointQuadtree.build(live.subList(0, 1000), 0, 0, width, height);
+        for (Dot dot : live.subList(1000, 2000))
+        {
+            updatedTree.insert(dot);
+        }
+
+        int bad = testValid("Test 10, Before", updatedTree, live);
+        for (int i = 0; i < 3000; i += 1)
+        {
+            Dot dot = live.get(random.nextInt(live.size()));
+            PointQuadtree<Dot> node = nodeOf(updatedTree, dot);
+            double oldX = dot.getX(), oldY = dot.getY();
+
+            // Staying strictly inside the node's region (so on the same side of every split line above it).
+            if (i % 3 == 0)
+            {
+                List<PointQuadtree<Dot>> children = new ArrayList<>();
+                for (int quadrant = 1; quadrant <= 4; quadrant += 1)
+                {
+                    children.add(node.getChild(quadrant));
+                }
+
+                if (!moveWithinRegion(node, dot, random)) continue;
+                boolean held = updatedTree.update(dot, oldX, oldY);
+
+                boolean unchanged = nodeOf(updatedTree, dot) == node;
+                for (int quadrant = 1; quadrant <= 4; quadrant += 1)
+                {
+                    unchanged = unchanged && node.getChild(quadrant) == children.get(quadrant - 1);
+                }
+
+                if (!held || !unchanged)
+                {
+                    bad += 1;
+                    System.err.println("Test 10, Within Region: Got " + held + " (node unchanged: " + unchanged + ") but expected true (node unchanged: true)");
+                }
+            }
+
+            // Leaving the node's region, across a split line above it.
+            else if (i % 3 == 1)
+            {
+                double x = random.nextDouble() * width, y = random.nextDouble() * height;
+                if (x >= node.getX1() && x <= node.getX2() && y >= node.getY1() && y <= node.getY2()) continue;
+
+                dot.setX(x);
+                dot.setY(y);
+                if (!updatedTree.update(dot, oldX, oldY) || nodeOf(updatedTree, dot) == null)
+                {
+                    bad += 1;
+                    System.err.println("Test 10, Across A Split Line: Dot " + dot + " not held after the move");
+                }
+            }
+
+            // Landing on another dot: one below the node on even moves (if there is one), any other dot on odd moves.
+            else
+            {
+                List<Dot> below = node.allPoints();
+                below.remove(dot);
+                Dot other = !below.isEmpty() && i % 2 == 0 ? below.get(random.nextInt(below.size())) : live.get(random.nextInt(live.size()));
+                if (other == dot) continue;
+
+                dot.setX(other.getX());
+                dot.setY(other.getY());
+                live.remove(dot);
+                if (updatedTree.update(dot, oldX, oldY) || nodeOf(updatedTree, other) == null)
+                {
+                    bad += 1;
+                    System.err.println("Test 10, Onto Another Dot: Dot " + dot + " not dropped, or " + other + " not kept");
+                }
+            }
+
+            if (i % 100 == 99) bad += testValid("Test 10, Move " + (i + 1), updatedTree, live);
+        }
+
+        if (bad == 0) System.out.println("Test 10 Passed!");
+    }
+
+    /**
+     * Test 11 -> SpatialHashGrid, with cells of 0.5, 10 and 64 pixels and cells of 2000 pixels (one cell spanning the
+     * whole region), each on 3000 dots (one in twenty at the location of an earlier dot, some outside the region). Over
+     * rounds of moves (within a cell and across cells), removes and inserts, the circle, rectangle, nearest and
+     * anyInCircleExcept queries find the same dots as a scan, including circles and rectangles far larger than the
+     * region and nearest queries far outside it (whose cells reach the int limits).
+     */
+    private void test11()
+    {
+        found = null;
+        Random random = new Random(130);
+
+        int bad = 0;
+        for (double cellSize : new double[] {0.5, 10, 64, 2000})
+        {
+            String which = "Test 11, Cell Size " + cellSize;
+
+            SpatialHashGrid<Dot> grid = new SpatialHashGrid<>(cellSize);
+            List<Dot> live = new ArrayList<>();
+            for (int i = 0; i < 3000; i += 1)
+            {
+                Dot dot = i > 0 && i % 20 == 0 ? new Dot(live.get(random.nextInt(i)).getX(), live.get(random.nextInt(i)).getY())
+                        : new Dot(random.nextDouble() * (width + 100) - 50, random.nextDouble() * (height + 100) - 50);
+                live.add(dot);
+                grid.insert(dot);
+            }
+
+            for (int round = 0; round < 5; round += 1)
+            {
+                // Moving dots, half a short step (often within the cell) and half anywhere.
+                for (int i = 0; i < 300; i += 1)
+                {
+                    Dot dot = live.get(random.nextInt(live.size()));
+                    double oldX = dot.getX(), oldY = dot.getY();
+                    double step = i % 2 == 0 ? 1 : width;
+                    dot.setX(oldX + (random.nextDouble() - 0.5) * step);
+                    dot.setY(oldY + (random.nextDouble() - 0.5) * step);
+
+                    if (!grid.update(dot, oldX, oldY))
+                    {
+                        bad += 1;
+                        System.err.println(which + ", Update: Dot " + dot + " not found at " + oldX + ", " + oldY);
+                    }
+                }
+
+                for (int i = 0; i < 200; i += 1)
+                {
+                    Dot dot = live.remove(random.nextInt(live.size()));
+                    if (!grid.remove(dot) || grid.remove(dot))
+                    {
+                        bad += 1;
+                        System.err.println(which + ", Remove: Dot " + dot + " not removed exactly once");
+                    }
+                }
+
+                for (int i = 0; i < 200; i += 1)
+                {
+                    Dot dot = new Dot(random.nextDouble() * width, random.nextDouble() * height);
+                    live.add(dot);
+                    grid.insert(dot);
+                }
+
+                if (grid.size() != live.size())
+                {
+                    bad += 1;
+                    System.err.println(which + ": Wrong Size, Got " + grid.size() + " but expected " + live.size());
+                }
+
+                bad += testQueries(which, grid, live, random, 50);
+
+                for (int i = 0; i < 50; i += 1)
+                {
+                    Dot self = live.get(random.nextInt(live.size()));
+                    double r = random.nextDouble() * 20;
+
+                    boolean expected = scanCircle(live, self.getX(), self.getY(), r).size() > 1;
+                    if (grid.anyInCircleExcept(self.getX(), self.getY(), r, self) != expected)
+                    {
+                        bad += 1;
+                        System.err.println(which + ", Any In Circle: Got " + !expected + " but expected " + expected);
+                    }
+                }
+
+                // Queries reaching far past the region, so their cells saturate at the int limits.
+                double huge = 1e12;
+                bad += testSame(which + ", Huge Circle", grid.findInCircle(0, 0, huge), scanCircle(live, 0, 0, huge));
+                bad += testSame(which + ", Huge Rectangle", grid.findInRectangle(-huge, -huge, huge, huge),
+                        scanRectangle(live, -huge, -huge, huge, huge));
+                bad += testNearest(which + ", Far Nearest", grid.nearest(huge, -huge, numNearest), live, huge, -huge);
+            }
+        }
+
+        if (bad == 0) System.out.println("Test 11 Passed!");
+    }
+
+    /**
+     * Test 12 -> FrozenQuadtree, compiled from a built tree of 5000 random dots, with tight bounds off and on, then again
+     * after 2000 moves within the dots' node regions (so anchors no longer sit on their split lines) and 300 moves anywhere.
+     * Each circle and rectangle query (radii up to 300, so whole subtrees are often inside) finds the same dots, in the
+     * same order and with the same Geometry tests, as the PointQuadtree, and the same dots as a scan.
+     */
+    private void test12()
+    {
+        found = null;
+        Random random = new Random(140);
+
+        int bad = 0;
+        for (boolean tight : new boolean[] {false, true})
+        {
+            List<Dot> live = new ArrayList<>();
+            for (int i = 0; i < 5000; i += 1)
+            {
+                live.add(new Dot(random.nextDouble() * width, random.nextDouble() * height));
+            }
+
+            PointQuadtree<Dot> dotTree = PointQuadtree.build(live, 0, 0, width, height);
+            dotTree.setTightBounds(tight);
+            bad += testFrozen("Test 12, Tight " + tight + ", Built", dotTree, live, random);
+
+            for (int i = 0; i < 2300; i += 1)
+            {
+                Dot dot = live.get(random.nextInt(live.size()));
+                double oldX = dot.getX(), oldY = dot.getY();
+
+                if (i < 2000)
+                {
+                    if (!moveWithinRegion(nodeOf(dotTree, dot), dot, random)) continue;
+                }
+
+                else
+                {
+                    dot.setX(random.nextDouble() * width);
+                    dot.setY(random.nextDouble() * height);
+                }
+
+                if (!dotTree.update(dot, oldX, oldY)) live.remove(dot);
+            }
+            bad += testFrozen("Test 12, Tight " + tight + ", Moved", dotTree, live, random);
+        }
+
+        if (bad == 0) System.out.println("Test 12 Passed!");
+    }
+
+    /**
+     * Test 13 -> PointQuadtree.findInCircleParallel, on 3000 random dots in a built tree and in a tree grown by insert with
+     * tight bounds. With thresholds of 1, 10 and 300 (so the search is split into fork-join tasks, far below the default)
+     * and the default (under which the search is findInCircle's), 80 random circles find the same dots, in the same order,
+     * as findInCircle. Then buildParallel, with thresholds of 1, 50 and the default, builds the same tree as build (the
+     * same anchors, split lines, regions, counts, boxes and children) from 0, 1, 100 and 3000 dots on a coarse grid (so
+     * many dots share a location), and the tree is valid. A threshold below 1 is rejected by both.
+     */
+    private void test13()
+    {
+        found = null;
+        Random random = new Random(150);
+
+        List<Dot> dots = new ArrayList<>();
+        for (int i = 0; i < 3000; i += 1)
+        {
+            dots.add(new Dot(random.nextDouble() * width, random.nextDouble() * height));
+        }
+
+        PointQuadtree<Dot> builtTree = PointQuadtree.build(dots, 0, 0, width, height);
+        PointQuadtree<Dot> insertedTree = new PointQuadtree<>(0, 0, width, height);
+        insertedTree.setTightBounds(true);
+        for (Dot dot : dots)
+        {
+            insertedTree.insert(dot);
+        }
+
+        int bad = 0;
+        for (int trial = 0; trial < 2; trial += 1)
+        {
+            PointQuadtree<Dot> dotTree = trial == 0 ? builtTree : insertedTree;
+
+            for (int threshold : new int[] {1, 10, 300, 1 << 15})
+            {
+                String which = "Test 13, " + (trial == 0 ? "Built" : "Inserted, Tight") + ", Threshold " + threshold;
+
+                for (int i = 0; i < 80; i += 1)
+                {
+                    double x = random.nextDouble() * width, y = random.nextDouble() * height, r = random.nextDouble() * 400;
+
+                    List<Dot> expected = dotTree.findInCircle(x, y, r);
+                    List<Dot> got = dotTree.findInCircleParallel(x, y, r, threshold);
+                    if (!got.equals(expected))
+                    {
+                        bad += 1;
+                        System.err.println(which + ": Got " + got.size() + " dots but expected " + expected.size() + " (in the same order)");
+                    }
+                }
+            }
+        }
+
+        for (int numDots : new int[] {0, 1, 100, 3000})
+        {
+            List<Dot> gridDots = new ArrayList<>();
+            for (int i = 0; i < numDots; i += 1)
+            {
+                gridDots.add(new Dot(random.nextInt(40) * 20, random.nextInt(30) * 20));
+            }
+
+            PointQuadtree<Dot> expected = PointQuadtree.build(gridDots, 0, 0, width, height);
+            for (int threshold : new int[] {1, 50, 1 << 15})
+            {
+                String which = "Test 13, Build Parallel, " + numDots + " Dots, Threshold " + threshold;
+
+                PointQuadtree<Dot> got = PointQuadtree.buildParallel(gridDots, 0, 0, width, height, threshold);
+                bad += testSameTree(which, expected, got);
+                bad += testValid(which, got, expected.allPoints());
+            }
+        }
+
+        try
+        {
+            builtTree.findInCircleParallel(width / 2, height / 2, 100, 0);
+            bad += 1;
+            System.err.println("Test 13: Threshold 0 was not rejected by findInCircleParallel");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Expected.
+        }
+
+        try
+        {
+            PointQuadtree.buildParallel(dots, 0, 0, width, height, 0);
+            bad += 1;
+            System.err.println("Test 13: Threshold 0 was not rejected by buildParallel");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Expected.
+        }
+
+        if (bad == 0) System.out.println("Test 13 Passed!");
+    }
+
+    /**
+     * Returns a random dot on a whole pixel, in a band (a fifth of the width) which drifts to the right each round.
+     */
+    private static Dot driftingDot(Random random, int round)
+    {
+        return new Dot(round * 32 + random.nextInt(160), random.nextInt(600));
+    }
+
+    /**
+     * Finds the whole pixel of a dot (x * 600 + y).
+     */
+    private static int cell(Dot dot)
+    {
+        return (int) dot.getX() * 600 + (int) dot.getY();
+    }
+
+    /**
+     * A testing procedure, making sure the quadtree holds exactly the live dots, that each is reached by descending from
+     * the root as insert would, and that each node's count and box (the smallest around them) match the dots in its subtree,
+     * printing a message if not.
+     *
+     * @return The number of errors.
+     */
+    private static int testValid(String which, PointQuadtree<Dot> root, List<Dot> live)
+    {
+        int bad = testSame(which + ", Points", root.allPoints(), live);
+
+        // Routing each dot from the root, by the splits of the nodes on the way.
+        for (Dot dot : live)
+        {
+            if (nodeOf(root, dot) == null)
+            {
+                bad += 1;
+                System.err.println(which + ": Dot " + dot + " not reached from the root");
+            }
+        }
+
+        // Checking the count and box of each node.
+        List<PointQuadtree<Dot>> nodes = new ArrayList<>();
+        if (root.getPoint() != null) nodes.add(root);
+        while (!nodes.isEmpty())
+        {
+            PointQuadtree<Dot> node = nodes.remove(nodes.size() - 1);
+            List<Dot> dots = node.allPoints();
+
+            if (node.size() != dots.size())
+            {
+                bad += 1;
+                System.err.println(which + ": Wrong Count, Got " + node.size() + " but expected " + dots.size());
+            }
+
+            // The box is the smallest around the dots (refit after every change, so never loose).
+            double bx1 = Double.POSITIVE_INFINITY, by1 = Double.POSITIVE_INFINITY, bx2 = Double.NEGATIVE_INFINITY, by2 = Double.NEGATIVE_INFINITY;
+            for (Dot dot : dots)
+            {
+                bx1 = Math.min(bx1, dot.getX());
+                by1 = Math.min(by1, dot.getY());
+                bx2 = Math.max(bx2, dot.getX());
+                by2 = Math.max(by2, dot.getY());
+            }
+
+            if (node.getBoxX1() != bx1 || node.getBoxY1() != by1 || node.getBoxX2() != bx2 || node.getBoxY2() != by2)
+            {
+                bad += 1;
+                System.err.println(which + ": Wrong Box at " + node.getPoint() + ", Got " + node.getBoxX1() + ", " + node.getBoxY1() + " - "
+                        + node.getBoxX2() + ", " + node.getBoxY2() + " but expected " + bx1 + ", " + by1 + " - " + bx2 + ", " + by2);
+            }
+
+            for (int quadrant = 1; quadrant <= 4; quadrant += 1)
+            {
+                if (node.hasChild(quadrant)) nodes.add(node.getChild(quadrant));
+            }
+        }
+
+        return bad;
+    }
+
+    /**
+     * A testing procedure, making sure two quadtrees have the same shape: the same anchor, split lines, region, count and
+     * box at each node, and children in the same quadrants, printing a message at the first difference.
+     *
+     * @return 1 if the trees differ, 0 if they are the same.
+     */
+    private static int testSameTree(String which, PointQuadtree<Dot> expected, PointQuadtree<Dot> got)
+    {
+        // Pairs of nodes to compare, the expected node of each pair first.
+        List<PointQuadtree<Dot>> pending = new ArrayList<>();
+        pending.add(expected);
+        pending.add(got);
+
+        while (!pending.isEmpty())
+        {
+            PointQuadtree<Dot> b = pending.remove(pending.size() - 1), a = pending.remove(pending.size() - 1);
+
+            boolean same = a.getPoint() == b.getPoint() && a.size() == b.size()
+                    && a.getX1() == b.getX1() && a.getY1() == b.getY1() && a.getX2() == b.getX2() && a.getY2() == b.getY2();
+
+            // An empty quadtree has no split lines or box to compare.
+            if (same && a.getPoint() != null)
+            {
+                same = a.getSplitX() == b.getSplitX() && a.getSplitY() == b.getSplitY()
+                        && a.getBoxX1() == b.getBoxX1() && a.getBoxY1() == b.getBoxY1() && a.getBoxX2() == b.getBoxX2() && a.getBoxY2() == b.getBoxY2();
+            }
+
+            for (int quadrant = 1; quadrant <= 4; quadrant += 1)
+            {
+                same = same && a.hasChild(quadrant) == b.hasChild(quadrant);
+            }
+
+            if (!same)
+            {
+                System.err.println(which + ": Different Trees, Got a node at " + b.getPoint() + " (" + b.size() + " points) but expected one at "
+                        + a.getPoint() + " (" + a.size() + " points)");
+                return 1;
+            }
+
+            for (int quadrant = 1; quadrant <= 4; quadrant += 1)
+            {
+                if (a.hasChild(quadrant))
+                {
+                    pending.add(a.getChild(quadrant));
+                    pending.add(b.getChild(quadrant));
+                }
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * A testing procedure, freezing the quadtree and making sure the frozen copy answers 100 random circle and rectangle
+     * queries with the same dots as the quadtree (in the same order, and with the same Geometry tests for circles) and
+     * as a scan of the live dots, printing a message if not. Some circles must take a whole subtree as a run of the arrays.
+     *
+     * @return The number of errors.
+     */
+    private static int testFrozen(String which, PointQuadtree<Dot> dotTree, List<Dot> live, Random random)
+    {
+        FrozenQuadtree<Dot> frozen = dotTree.freeze();
+
+        int bad = 0, runs = 0;
+        for (int i = 0; i < 100; i += 1)
+        {
+            double x = random.nextDouble() * width, y = random.nextDouble() * height, r = random.nextDouble() * 300;
+
+            Geometry.resetNumInCircleTests();
+            Geometry.resetNumCircleRectangleTests();
+            Geometry.resetNumRectangleInCircleTests();
+            List<Dot> expected = dotTree.findInCircle(x, y, r);
+            int[] tests = {Geometry.getNumInCircleTests(), Geometry.getNumCircleRectangleTests(), Geometry.getNumRectangleInCircleTests()};
+
+            Geometry.resetNumInCircleTests();
+            Geometry.resetNumCircleRectangleTests();
+            Geometry.resetNumRectangleInCircleTests();
+            List<Dot> got = frozen.findInCircle(x, y, r);
+            int[] frozenTests = {Geometry.getNumInCircleTests(), Geometry.getNumCircleRectangleTests(), Geometry.getNumRectangleInCircleTests()};
+
+            // A run of the arrays reports points without testing them.
+            if (got.size() > frozenTests[0]) runs += 1;
+
+            List<Dot> each = new ArrayList<>();
+            frozen.forEachInCircle(x, y, r, each::add);
+
+            if (!got.equals(expected) || !each.equals(expected) || frozen.countInCircle(x, y, r) != expected.size() || !Arrays.equals(tests, frozenTests))
+            {
+                bad += 1;
+                System.err.println(which + ", Circle: Got " + got.size() + " dots with tests " + Arrays.toString(frozenTests) + " but expected "
+                        + expected.size() + " with tests " + Arrays.toString(tests) + " (in the same order)");
+            }
+            bad += testSame(which + ", Circle", got, scanCircle(live, x, y, r));
+
+            List<Dot> gotRectangle = frozen.findInRectangle(x - r, y - r, x + r, y + r);
+            if (!gotRectangle.equals(dotTree.findInRectangle(x - r, y - r, x + r, y + r)))
+            {
+                bad += 1;
+                System.err.println(which + ", Rectangle: Not the same dots, in the same order, as the quadtree");
+            }
+            bad += testSame(which + ", Rectangle", gotRectangle, scanRectangle(live, x - r, y - r, x + r, y + r));
+        }
+
+        if (runs == 0)
+        {
+            bad += 1;
+            System.err.println(which + ": No circle took a whole subtree as a run");
+        }
+
+        return bad;
+    }
+
+    /**
+     * Moves the dot to a random location strictly inside the node's region (so on the same side of every split line above
+     * the node), unless the region is too thin to have one.
+     *
+     * @return Whether the dot was moved.
+     */
+    private static boolean moveWithinRegion(PointQuadtree<Dot> node, Dot dot, Random random)
+    {
+        double x = node.getX1() + (node.getX2() - node.getX1()) * (0.1 + 0.8 * random.nextDouble());
+        double y = node.getY1() + (node.getY2() - node.getY1()) * (0.1 + 0.8 * random.nextDouble());
+        if (x <= node.getX1() || x >= node.getX2() || y <= node.getY1() || y >= node.getY2()) return false;
+
+        dot.setX(x);
+        dot.setY(y);
+        return true;
+    }
+
+    /**
+     * Finds the node anchored by the dot, descending from the root as insert would (by the splits of the nodes on the way).
+     *
+     * @return The node, or null if the dot is not reached.
+     */
+    private static PointQuadtree<Dot> nodeOf(PointQuadtree<Dot> root, Dot dot)
+    {
+        PointQuadtree<Dot> node = root;
+        while (node != null && node.getPoint() != dot)
+        {
+            double x = dot.getX(), y = dot.getY(), splitX = node.getSplitX(), splitY = node.getSplitY();
+            if (x == node.getPoint().getX() && y == node.getPoint().getY()) node = null;
+            else if (x >= splitX && y <= splitY) node = node.getChild(1);
+            else if (x <= splitX && y <= splitY) node = node.getChild(2);
+            else if (x <= splitX && y >= splitY) node = node.getChild(3);
+            else node = node.getChild(4);
+        }
+        return node;
+    }
+
+    /**
+     * Returns a random dot: one in ten anywhere, the rest near one of 30 cluster centers (fixed for all the trials).
+     */
+    private static Dot clusteredDot(Random random, double spread)
+    {
+        if (random.nextInt(10) == 0) return new Dot(random.nextDouble() * width, random.nextDouble() * height);
+
+        Random centers = new Random(random.nextInt(30));
+        double x = centers.nextDouble() * width + random.nextGaussian() * spread;
+        double y = centers.nextDouble() * height + random.nextGaussian() * spread;
+        return new Dot(Math.min(Math.max(x, 0), width), Math.min(Math.max(y, 0), height));
+    }
+
+    /**
+     * A testing procedure, walking the PR quadtree to make sure every dot is within its leaf's region, and that no node
+     * below the root holds all of its dots in a single child (which should have been compressed into it), printing a
+     * message if not.
+     *
+     * @return The number of nodes which are wrong.
+     */
+    private static int testCompressed(String which, PRQuadtree<Dot> node, boolean root)
+    {
+        int bad = 0;
+
+        if (node.isLeaf())
+        {
+            for (Dot dot : node.allPoints())
+            {
+                if (dot.getX() < node.getX1() || dot.getX() > node.getX2() || dot.getY() < node.getY1() || dot.getY() > node.getY2())
+                {
+                    bad += 1;
+                    System.err.println(which + ": Dot " + dot + " outside its leaf " + node.getX1() + ", " + node.getY1()
+                            + " - " + node.getX2() + ", " + node.getY2());
+                }
+            }
+            return bad;
+        }
+
+        int nonEmpty = 0;
+        for (int quadrant = 1; quadrant <= 4; quadrant += 1)
+        {
+            PRQuadtree<Dot> child = node.getChild(quadrant);
+            if (!child.isLeaf() || child.size() > 0) nonEmpty += 1;
+            bad += testCompressed(which, child, false);
+        }
+
+        if (!root && nonEmpty < 2)
+        {
+            bad += 1;
+            System.err.println(which + ": Chain at " + node.getX1() + ", " + node.getY1() + " - " + node.getX2() + ", " + node.getY2());
+        }
+
+        return bad;
+    }
+
+    /**
+     * Runs 10 rounds of random inserts, removes and moves on the buffered quadtree, each followed by circle, rectangle and
+     * anyInCircleExcept queries (which may scan the buffer), then the queries which merge it (nearest and pairs).
+     *
+     * @return The number of queries which found different points.
+     */
+    private static int testBuffered(String which, BufferedQuadtree<Dot> bufferedTree, Random random)
+    {
+        List<Dot> live = new ArrayList<>();
+
+        int bad = 0;
+        for (int round = 0; round < 10; round += 1)
+        {
+            for (int i = 0; i < 300; i += 1)
+            {
+                Dot dot = new Dot(random.nextDouble() * width, random.nextDouble() * height);
+                live.add(dot);
+                bufferedTree.insert(dot);
+            }
+
+            for (int i = 0; i < 50; i += 1)
+            {
+                bufferedTree.remove(live.remove(random.nextInt(live.size())));
+            }
+
+            // Moving dots a little, whether they are buffered or merged.
+            for (int i = 0; i < 100; i += 1)
+            {
+                Dot dot = live.get(random.nextInt(live.size()));
+                double oldX = dot.getX(), oldY = dot.getY();
+                dot.setX(Math.min(Math.max(oldX + random.nextDouble() * 20 - 10, 0), width));
+                dot.setY(Math.min(Math.max(oldY + random.nextDouble() * 20 - 10, 0), height));
+                bufferedTree.update(dot, oldX, oldY);
+            }
+
+            for (int i = 0; i < 20; i += 1)
+            {
+                double x = random.nextDouble() * width, y = random.nextDouble() * height, r = random.nextDouble() * 100;
+
+                bad += testSame(which + ", Circle", bufferedTree.findInCircle(x, y, r), scanCircle(live, x, y, r));
+                bad += testSame(which + ", Rectangle", bufferedTree.findInRectangle(x - r, y - r, x + r, y + r),
+                        scanRectangle(live, x - r, y - r, x + r, y + r));
+
+                Dot self = live.get(random.nextInt(live.size()));
+                boolean expected = scanCircle(live, self.getX(), self.getY(), 10).size() > 1;
+                if (bufferedTree.anyInCircleExcept(self.getX(), self.getY(), 10, self) != expected)
+                {
+                    bad += 1;
+                    System.err.println(which + ", Any In Circle: Got " + !expected + " but expected " + expected);
+                }
+            }
+
+            bad += testQueries(which, bufferedTree, live, random, 20);
+            bad += testPairs(which + ", Pairs", bufferedTree, live, 10);
+        }
+
+        return bad;
+    }
+
+    /**
+     * A testing procedure, making sure the index passes each pair of points within the distance exactly once,
+     * as found by checking every pair, and printing a message if not.
+     *
+     * @return 1 if the pairs differ, 0 if they are the same.
+     */
+    private static <E extends Point2D> int testPairs(String which, SpatialIndex<E> index, List<E> points, double distance)
+    {
+        int n = points.size();
+        Map<E, Integer> order = new IdentityHashMap<>();
+        for (int i = 0; i < n; i += 1)
+        {
+            order.put(points.get(i), i);
+        }
+
+        // Each pair as the index of its earlier point times n, plus the index of its later point.
+        List<Long> got = new ArrayList<>();
+        index.forEachPairWithin(distance, (a, b) ->
+        {
+            long i = order.getOrDefault(a, -1), j = order.getOrDefault(b, -1);
+            got.add(Math.min(i, j) * n + Math.max(i, j));
+        });
+
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < n; i += 1)
+        {
+            for (int j = i + 1; j < n; j += 1)
+            {
+                E a = points.get(i), b = points.get(j);
+                if (Geometry.pointInCircle(b.getX(), b.getY(), a.getX(), a.getY(), distance)) expected.add((long) i * n + j);
+            }
+        }
+
+        if (got.size() == expected.size() && new HashSet<>(got).equals(expected)) return 0;
+
+        System.err.println(which + ": Wrong Pairs, Got " + got.size() + " but expected " + expected.size());
+        return 1;
+    }
+
+    /**
+     * While a writer thread inserts random dots into a PersistentQuadtree, publishing each version, reader threads query
+     * the version they last took (a circle covering the whole region), which must find exactly its size() dots.
+     *
+     * @return The number of queries which found a different number of dots.
+     */
+    private static int testReaders(Random random)
+    {
+        AtomicReference<PersistentQuadtree<Dot>> published = new AtomicReference<>(new PersistentQuadtree<>(0, 0, width, height));
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicInteger bad = new AtomicInteger();
+
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i += 1)
+        {
+            Thread reader = new Thread(() ->
+            {
+                while (writing.get())
+                {
+                    PersistentQuadtree<Dot> snapshot = published.get();
+                    int num = snapshot.findInCircle(width / 2, height / 2, width + height).size();
+                    if (num != snapshot.size())
+                    {
+                        bad.incrementAndGet();
+                        System.err.println("Test 6, Readers: Wrong # Hits, Got " + num + " but expected " + snapshot.size());
+                    }
+                }
+            });
+            readers.add(reader);
+            reader.start();
+        }
+
+        for (int i = 0; i < 50000; i += 1)
+        {
+            published.set(published.get().insert(new Dot(random.nextDouble() * width, random.nextDouble() * height)));
+        }
+        writing.set(false);
+
+        for (Thread reader : readers)
+        {
+            try
+            {
+                reader.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        return bad.get();
+    }
+
+    /**
+     * Scans all the circles for those overlapping (or touching) the query circle (a brute-force check of CircleQuadtree).
+     */
+    private static List<Blob> scanOverlapping(List<Blob> blobs, double cx, double cy, double cr)
+    {
+        List<Blob> overlapping = new ArrayList<>();
+        for (Blob blob : blobs)
+        {
+            if (Geometry.pointInCircle(blob.getX(), blob.getY(), cx, cy, cr + blob.getR())) overlapping.add(blob);
+        }
+        return overlapping;
+    }
+
+    /**
+     * Maps the ids found by an OffHeapQuadtree back to the dots (each id is the index of its dot).
+     */
+    private static List<Dot> byId(List<Dot> dots, long[] ids)
+    {
+        List<Dot> byId = new ArrayList<>();
+        for (long id : ids)
+        {
+            byId.add(dots.get((int) id));
+        }
+        return byId;
+    }
+
+    /**
+     * Scans all the points for those within the circle (a brute-force check of the indexes).
+     */
+    private static <E extends Point2D> List<E> scanCircle(List<E> points, double cx, double cy, double cr)
+    {
+        List<E> inCircle = new ArrayList<>();
+        for (E point : points)
+        {
+            if (Geometry.pointInCircle(point.getX(), point.getY(), cx, cy, cr)) inCircle.add(point);
+        }
+        return inCircle;
+    }
+
+    /**
+     * Scans all the points for those within the rectangle (a brute-force check of the indexes).
+     */
+    private static <E extends Point2D> List<E> scanRectangle(List<E> points, double rx1, double ry1, double rx2, double ry2)
+    {
+        List<E> inRectangle = new ArrayList<>();
+        for (E point : points)
+        {
+            if (GeometryExtra.pointInRectangle(point.getX(), point.getY(), rx1, ry1, rx2, ry2)) inRectangle.add(point);
+        }
+        return inRectangle;
+    }
+
+    /**
+     * A testing procedure, running random circle, rectangle and nearest queries on an index, and making sure each
+     * finds the same points as a scan of the points it holds.
+     *
+     * @return The number of queries (of each kind) which found different points.
+     */
+    private static <E extends Point2D> int testQueries(String which, SpatialIndex<E> index, List<E> points, Random random, int numQueries)
+    {
+        int bad = 0;
+        for (int i = 0; i < numQueries; i += 1)
+        {
+            double x = random.nextDouble() * width, y = random.nextDouble() * height, r = random.nextDouble() * 100;
+
+            bad += testSame(which + ", Circle", index.findInCircle(x, y, r), scanCircle(points, x, y, r));
+            bad += testSame(which + ", Rectangle", index.findInRectangle(x - r, y - r, x + r, y + r),
+                    scanRectangle(points, x - r, y - r, x + r, y + r));
+            bad += testNearest(which + ", Nearest", index.nearest(x, y, numNearest), points, x, y);
+        }
+        return bad;
+    }
+
+    /**
+     * A testing procedure, making sure the points found nearest the location are as near as the nearest points of a scan
+     * (points at the same distance may be found in any order), and printing a message if not.
+     *
+     * @return 1 if the points differ, 0 if they are the same.
+     */
+    private static int testNearest(String which, List<? extends Point2D> got, List<? extends Point2D> points, double x, double y)
+    {
+        int expected = Math.min(numNearest, points.size());
+
+        // The nearest distances of the scan, kept sorted by inserting each smaller one in its place.
+        double[] distances = new double[expected];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        for (Point2D point : points)
+        {
+            double distance = distanceSquared(point, x, y);
+            int i = expected;
+            while (i > 0 && distances[i - 1] > distance)
+            {
+                if (i < expected) distances[i] = distances[i - 1];
+                i -= 1;
+            }
+            if (i < expected) distances[i] = distance;
+        }
+
+        Set<Point2D> gotSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        gotSet.addAll(got);
+
+        boolean same = got.size() == expected && gotSet.size() == expected;
+        for (int i = 0; same && i < expected; i += 1)
+        {
+            same = distanceSquared(got.get(i), x, y) == distances[i];
+        }
+
+        if (same) return 0;
+
+        System.err.println(which + ": Wrong Points, Got " + got + " nearest " + x + ", " + y);
+        return 1;
+    }
+
+    /**
+     * Finds the squared distance from the point to the location.
+     */
+    private static double distanceSquared(Point2D point, double x, double y)
+    {
+        double dx = point.getX() - x, dy = point.getY() - y;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * A testing procedure, making sure an index found the same points as a scan (by identity, in any order),
+     * and printing a message if not.
+     *
+     * @return 1 if the points differ, 0 if they are the same.
+     */
+    private static int testSame(String which, List<? extends Point2D> got, List<? extends Point2D> expected)
+    {
+        Set<Point2D> gotSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        gotSet.addAll(got);
+
+        if (gotSet.size() == got.size() && got.size() == expected.size() && gotSet.containsAll(expected)) return 0;
+
+        System.err.println(which + ": Wrong Points, Got " + got.size() + " but expected " + expected.size());
+        return 1;
+    }
+
+    /**
+     * Benchmark -> Compares the number of times Geometry.circleIntersectsRectangle is called per query,
+     * for trees grown by insert and trees from PointQuadtree.build, on input sorted by x and on random input.
+     */
+    private void benchmarkBuild()
+    {
+        int numDots = 2000, numQueries = 500;
+        Random random = new Random(10);
+
+        // Dots arriving sorted by x (as in our ingest), and the same number of dots in random order.
+        List<Dot> sortedDots = new ArrayList<>();
+        List<Dot> randomDots = new ArrayList<>();
+        for (int i = 0; i < numDots; i += 1)
+        {
+            sortedDots.add(new Dot((double) i * width / numDots, random.nextDouble() * height));
+            randomDots.add(new Dot(random.nextDouble() * width, random.nextDouble() * height));
+        }
+
+        benchmarkQueries("Sorted, Insert", insertAll(sortedDots), numQueries);
+        benchmarkQueries("Sorted, Build", PointQuadtree.build(sortedDots, 0, 0, width, height), numQueries);
+        benchmarkQueries("Random, Insert", insertAll(randomDots), numQueries);
+        benchmarkQueries("Random, Build", PointQuadtree.build(randomDots, 0, 0, width, height), numQueries);
+
+        // The same balanced tree, pruning with the boxes around the points in each subtree instead of the regions.
+        PointQuadtree<Dot> tightTree = PointQuadtree.build(randomDots, 0, 0, width, height);
+        tightTree.setTightBounds(true);
+        benchmarkQueries("Random, Build, Tight", tightTree, numQueries);
+
+        // Timing a much larger tree, as nodes and frozen into arrays.
+        benchmarkFrozen(100 * numDots, 20 * numQueries);
+
+        // Timing the build of a much larger tree, and large circles on it, on one core and on all of them.
+        benchmarkParallel(500 * numDots, numQueries / 25);
+
+        // Displaying the balanced tree of random dots.
+        found = null;
+        tree = PointQuadtree.build(randomDots, 0, 0, width, height);
+    }
+
+    /**
+     * Grows a tree by inserting the dots one at a time, in order.
+     */
+    private PointQuadtree<Dot> insertAll(List<Dot> dots)
+    {
+        PointQuadtree<Dot> dotTree = new PointQuadtree<>(dots.get(0), 0, 0, width, height);
+        for (int i = 1; i < dots.size(); i += 1)
+        {
+            dotTree.insert(dots.get(i));
+        }
+        return dotTree;
+    }
+
+    /**
+     * Runs the same random circle queries on the tree, printing the average number of Geometry tests per query.
+     */
+    private void benchmarkQueries(String which, PointQuadtree<Dot> dotTree, int numQueries)
+    {
+        Random random = new Random(20);
+
+        Geometry.resetNumInCircleTests();
+        Geometry.resetNumCircleRectangleTests();
+
+        for (int i = 0; i < numQueries; i += 1)
+        {
+            dotTree.findInCircle(random.nextDouble() * width, random.nextDouble() * height, mouseRadius);
+        }
+
+        System.out.println(which + ": " + Geometry.getNumCircleRectangleTests() / numQueries + " Circle-Rectangle, "
+                + Geometry.getNumInCircleTests() / numQueries + " In Circle (Per Query)");
+    }
+
+    /**
+     * Times the same random circle queries on a tree of random dots and on its frozen copy, printing the nanoseconds per query.
+     * Once the nodes no longer fit in the cache, the frozen copy is faster, as its arrays are read in order.
+     */
+    private void benchmarkFrozen(int numDots, int numQueries)
+    {
+        Random random = new Random(30);
+
+        List<Dot> dots = new ArrayList<>();
+        for (int i = 0; i < numDots; i += 1)
+        {
+            dots.add(new Dot(random.nextDouble() * width, random.nextDouble() * height));
+        }
+
+        PointQuadtree<Dot> dotTree = insertAll(dots);
+        FrozenQuadtree<Dot> frozenTree = dotTree.freeze();
+
+        double[] xs = new double[numQueries], ys = new double[numQueries];
+        for (int i = 0; i < numQueries; i += 1)
+        {
+            xs[i] = random.nextDouble() * width;
+            ys[i] = random.nextDouble() * height;
+        }
+
+        // Each is run twice, so the second (printed) run is not slowed by the JIT compiling it.
+        long treeNanos = 0, frozenNanos = 0;
+        int treeFound = 0, frozenFound = 0;
+        for (int run = 0; run < 2; run += 1)
+        {
+            treeFound = 0;
+            frozenFound = 0;
+
+            long start = System.nanoTime();
+            for (int i = 0; i < numQueries; i += 1)
+            {
+                treeFound += dotTree.countInCircle(xs[i], ys[i], mouseRadius);
+            }
+            treeNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < numQueries; i += 1)
+            {
+                frozenFound += frozenTree.countInCircle(xs[i], ys[i], mouseRadius);
+            }
+            frozenNanos = System.nanoTime() - start;
+        }
+
+        System.out.println(numDots + " Dots, Insert: " + treeNanos / numQueries + " ns (Per Query), " + treeFound + " Found");
+        System.out.println(numDots + " Dots, Frozen: " + frozenNanos / numQueries + " ns (Per Query), " + frozenFound + " Found");
+    }
+
+    /**
+     * Times building a tree of random dots with build and buildParallel, then the same random circle queries
+     * (with radii up to half the height) searched by findInCircle on one core and by findInCircleParallel on all of them.
+     */
+    private void benchmarkParallel(int numDots, int numQueries)
+    {
+        Random random = new Random(40);
+
+        List<Dot> dots = new ArrayList<>();
+        for (int i = 0; i < numDots; i += 1)
+        {
+            dots.add(new Dot(random.nextDouble() * width, random.nextDouble() * height));
+        }
+
+        // Building the tree on one core and on all of them (the second build of each is printed, after the JIT has compiled it).
+        PointQuadtree<Dot> dotTree = null;
+        long buildNanos = 0, parallelBuildNanos = 0;
+        for (int run = 0; run < 2; run += 1)
+        {
+            long start = System.nanoTime();
+            dotTree = PointQuadtree.build(dots, 0, 0, width, height);
+            buildNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            dotTree = PointQuadtree.buildParallel(dots, 0, 0, width, height);
+            parallelBuildNanos = System.nanoTime() - start;
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println(numDots + " Dots, Build: " + buildNanos / 1000000 + " ms, Parallel Build (" + cores + " Cores): " + parallelBuildNanos / 1000000 + " ms");
+
+        double[] xs = new double[numQueries], ys = new double[numQueries], rs = new double[numQueries];
+        for (int i = 0; i < numQueries; i += 1)
+        {
+            xs[i] = random.nextDouble() * width;
+            ys[i] = random.nextDouble() * height;
+            rs[i] = random.nextDouble() * height / 2;
+        }
+
+        // Each is run twice, so the second (printed) run is not slowed by the JIT compiling it.
+        long sequentialNanos = 0, parallelNanos = 0;
+        int sequentialFound = 0, parallelFound = 0;
+        for (int run = 0; run < 2; run += 1)
+        {
+            sequentialFound = 0;
+            parallelFound = 0;
+
+            long start = System.nanoTime();
+            for (int i = 0; i < numQueries; i += 1)
+            {
+                sequentialFound += dotTree.findInCircle(xs[i], ys[i], rs[i]).size();
+            }
+            sequentialNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < numQueries; i += 1)
+            {
+                parallelFound += dotTree.findInCircleParallel(xs[i], ys[i], rs[i]).size();
+            }
+            parallelNanos = System.nanoTime() - start;
+        }
+
+        System.out.println(numDots + " Dots, Sequential: " + sequentialNanos / numQueries / 1000 + " us (Per Query), " + sequentialFound + " Found");
+        System.out.println(numDots + " Dots, Parallel (" + cores + " Cores): " + parallelNanos / numQueries / 1000 + " us (Per Query), " + parallelFound + " Found");
+    }
+
+    /**
+     * DrawingGUI Method -> Here toggling the mode between 'a', 'q' and 'n' and increasing/decreasing mouseRadius via +/-.
+     */
+    @Override
+    public void handleKeyPress(char key)
+    {
+        if (key == 'a' || key == 'q' || key == 'n') mode = key;
+
+        else if (key == '+')
+        {
+            mouseRadius += 10;
+        }
+
+        else if (key == '-')
+        {
+            mouseRadius -= 10;
+            if (mouseRadius < 0) mouseRadius = 0;
+        }
+
+        else if (key == 'm')
+        {
+            trackMouse = !trackMouse;
+        }
+
+        else if (key == '0')
+        {
+            test0();
+        }
+
+        else if (key == '1')
+        {
+            test1();
+        }
+
+        else if (key == '2')
+        {
+            test2();
+        }
+
+        else if (key == '3')
+        {
+            test3();
+        }
+
+        else if (key == '4')
+        {
+            test4();
+        }
+
+        else if (key == '5')
+        {
+            test5();
+        }
+
+        else if (key == '6')
+        {
+            test6();
+        }
+
+        else if (key == '7')
+        {
+            test7();
+        }
+
+        else if (key == '8')
+        {
+            test8();
+        }
+
+        else if (key == '9')
+        {
+            test9();
+        }
+
+        else if (key == 'u')
+        {
+            test10();
+        }
+
+        else if (key == 'h')
+        {
+            test11();
+        }
+
+        else if (key == 'f')
+        {
+            test12();
+        }
+
+        else if (key == 'p')
+        {
+            test13();
+        }
+
+        else if (key == 'b')
+        {
+            benchmarkBuild();
+        }
+
+        repaint();
+    }
+
+    /**
+     * DrawingGUI Method -> Here drawing the quadtree and if in query mode, the mouse location and any found dots.
+     */
+    @Override
+    public void draw(Graphics g)
+    {
+        // Drawing the PointQuadtree if it is not null (for other engines, just the dots).
+        if (tree instanceof PointQuadtree) drawTree(g, (PointQuadtree<Dot>) tree, 0);
+        else if (tree != null) drawDots(g, tree.allPoints());
+
+        // If we are querying with the mouse...
+        if (mode == 'q')
+        {
+            // Setting the color of the graphics to black and displaying the circle around the mouse.
+            g.setColor(Color.BLACK);
+            g.drawOval(mouseX - mouseRadius, mouseY - mouseRadius, 2 * mouseRadius, 2 * mouseRadius);
+
+            // Checking to make sure found it not equal to null.
+            if (found != null)
+            {
+                // Setting the color of the graphics to black.
+                g.setColor(Color.BLACK);
+
+                // Cycling through the dots in the list of "found" points.
+                for (Dot dot : found)
+                {
+                    g.fillOval((int) dot.getX() - dotRadius, (int) dot.getY() - dotRadius, 2 * dotRadius, 2 * dotRadius);
+                }
+            }
+        }
+
+        // If we are querying nearest the mouse, the found dots are drawn in black.
+        if (mode == 'n' && found != null)
+        {
+            g.setColor(Color.BLACK);
+
+            for (Dot dot : found)
+            {
+                g.fillOval((int) dot.getX() - dotRadius, (int) dot.getY() - dotRadius, 2 * dotRadius, 2 * dotRadius);
+            }
+        }
+    }
+
+    /**
+     * Draws the dots (for an index which is not a PointQuadtree).
+     */
+    public void drawDots(Graphics g, List<Dot> dots)
+    {
+        g.setColor(rainbow[0]);
+
+        for (Dot dot : dots)
+        {
+            g.fillOval((int) dot.getX() - dotRadius, (int) dot.getY() - dotRadius, 2 * dotRadius, 2 * dotRadius);
+        }
     }
 
     /**
@@ -308,11 +2159,11 @@ public class DotTreeGUI extends DrawingGUI
         // Drawing the node's dot.
         g.fillOval((int) tree.getPoint().getX() - dotRadius, (int) tree.getPoint().getY() - dotRadius, dotRadius * 2, dotRadius * 2);
 
-        // Drawing the horizontal line.
-        g.drawLine(tree.getX1(), (int) tree.getPoint().getY(), tree.getX2(), (int) tree.getPoint().getY());
+        // Drawing the horizontal split line.
+        g.drawLine((int) tree.getX1(), (int) tree.getSplitY(), (int) tree.getX2(), (int) tree.getSplitY());
 
-        // Drawing the vertical line.
-        g.drawLine((int) tree.getPoint().getX(), tree.getY1(), (int) tree.getPoint().getX(), tree.getY2());
+        // Drawing the vertical split line.
+        g.drawLine((int) tree.getSplitX(), (int) tree.getY1(), (int) tree.getSplitX(), (int) tree.getY2());
 
         // Recurse with the children of the parent node. Drawing all the descendants of the node.
         if (tree.hasChild(1))
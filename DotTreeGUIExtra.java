@@ -166,6 +166,44 @@ public class DotTreeGUIExtra extends DrawingGUI
         return errs;
     }
 
+    /**
+     * A simple testing procedure for rectangle queries (the square around the location, as in 'k' mode),
+     * making sure actual is expected, and printing a message if not.
+     *
+     * @param x Query x coordinate.
+     * @param y Query y coordinate.
+     * @param r Query half-width of the square.
+     * @param expectedRectangleRectangle How many times GeometryExtra.rectangleIntersectsRectangle is expected to be called.
+     * @param expectedHits How many points are expected to be found.
+     * @return 0 if passed; 1 if failed
+     */
+    private int testFindRectangle(int x, int y, int r, int expectedRectangleRectangle, int expectedHits)
+    {
+        // Resetting the counter function for the static GeometryExtra method.
+        GeometryExtra.resetNumRectangleRectangleTests();
+
+        int errs = 0;
+        int num = tree.findInRectangle(x - r, y - r, x + r, y + r).size();
+
+        String which = "[" + x + ", " + y + "]@" + r;
+
+        // Checking to see if the number of times GeometryExtra.rectangleIntersectsRectangle is expected to be called matches.
+        if (GeometryExtra.getNumRectangleRectangleTests() != expectedRectangleRectangle)
+        {
+            errs += 1;
+            System.err.println(which + ": Wrong # Rectangle-Rectangle, Got " + GeometryExtra.getNumRectangleRectangleTests() + " but expected " + expectedRectangleRectangle);
+        }
+
+        // Checking to see if the number of points are expected to be found matches.
+        if (num != expectedHits)
+        {
+            errs += 1;
+            System.err.println(which + ": Wrong # Hits, Got " + num + " but expected " + expectedHits);
+        }
+
+        return errs;
+    }
+
     /**
      * Test Tree 0 -> First three points from figure in handout.
      * Hardcoded point locations for 800x600.
@@ -178,11 +216,11 @@ public class DotTreeGUIExtra extends DrawingGUI
         tree.insert(new Dot(250, 550)); // C
 
         int bad = 0;
-        bad += testFind(0, 0, 900, 3, 3, 3); // Rectangle for all; circle for all; find all.
+        bad += testFind(0, 0, 900, 1, 0, 3); // Rectangle for A; all inside the circle; find all.
         bad += testFind(400, 300, 10, 3, 2, 1); // Rectangle for all; circle for A,B; find A.
         bad += testFind(150, 450, 10, 3, 3, 1); // Rectangle for all; circle for all; find B.
         bad += testFind(250, 550, 10, 3, 3, 1); // Rectangle for all; circle for all; find C.
-        bad += testFind(150, 450, 200, 3, 3, 2); // Rectangle for all; circle for all; find B, C.
+        bad += testFind(150, 450, 200, 2, 1, 2); // Rectangle for A, B; circle for A; B [C] inside the circle; find B, C.
         bad += testFind(140, 440, 10, 3, 2, 0); // Rectangle for all; circle for A,B; find none.
         bad += testFind(750, 550, 10, 2, 1, 0); // Rectangle for A,B; circle for A; find none.
 
@@ -213,8 +251,15 @@ public class DotTreeGUIExtra extends DrawingGUI
         bad += testFind(150, 450, 10, 6, 3, 1); // Rectangle for A [D] [E] [B [C]] [K]; circle for A, B, C; find B.
         bad += testFind(500, 125, 10, 8, 3, 1); // Rectangle for A [D [G F H]] [E] [B] [K]; circle for A, D, G; find G.
         bad += testFind(300, 400, 15, 10, 6, 2); // Rectangle for A [D [G F H]] [E] [B [C]] [K [L]]; circle for A,D,E,B,K,L; find A,L.
-        bad += testFind(495, 225, 50, 10, 6, 3); // Rectangle for A [D [G F H [I [J]]]] [E] [B] [K]; circle for A,D,G,H,I,J; find H,I,J
-        bad += testFind(0, 0, 900, 12, 12, 12); // Rectangle for all; circle for all; find all.
+        bad += testFind(495, 225, 50, 8, 3, 3); // Rectangle for A [D [G F H]] [E] [B] [K]; circle for A, D, G; H [I [J]] inside the circle; find H,I,J
+        bad += testFind(0, 0, 900, 1, 0, 12); // Rectangle for A; all inside the circle; find all.
+
+        // Rectangle queries, pruned by region.
+        bad += testFindRectangle(150, 450, 10, 6, 1); // Region for A [D] [E] [B [C]] [K]; find B.
+        bad += testFindRectangle(500, 125, 10, 8, 1); // Region for A [D [G F H]] [E] [B] [K]; find G.
+        bad += testFindRectangle(300, 400, 15, 10, 2); // Region for A [D [G F H]] [E] [B [C]] [K [L]]; find A, L.
+        bad += testFindRectangle(495, 225, 50, 8, 4); // Region for A [D [G F H]] [E] [B] [K]; H [I [J]] inside the square; find D, H, I, J.
+        bad += testFindRectangle(0, 0, 900, 1, 12); // Region for A; all inside the square; find all.
 
         if (bad == 0) System.out.println("Test 1 Passed!");
     }
@@ -229,11 +274,11 @@ public class DotTreeGUIExtra extends DrawingGUI
         tree.insert(new Dot(700, 100)); // E
 
         int bad = 0;
-        // Rectangle for all; circle for all; find all.
-        bad += testFind(400, 300, 900, 5, 5, 5);
+        // Rectangle for A; all inside the circle; find all.
+        bad += testFind(400, 300, 900, 1, 0, 5);
 
         // Other Test Cases
-        bad += testFind(650, 150, 100, 5, 5, 2);
+        bad += testFind(650, 150, 100, 4, 3, 2);
         bad += testFind(70, 500, 70, 3,2,1);
         bad += testFind(250, 300, 50, 4,3,0);
         bad += testFind(400, 200, 20, 5,4,0);
@@ -340,7 +385,7 @@ public class DotTreeGUIExtra extends DrawingGUI
      * @param tree A dot tree (not necessarily root).
      * @param level How far down from the root qt is (0 for root, 1 for its children, etc.)
      */
-    public void drawTree(Graphics g, PointQuadtreeExtra<Dot> tree, int level)
+    public void drawTree(Graphics g, PointQuadtree<Dot> tree, int level)
     {
         // Setting the color for this level, using a modulus function.
         g.setColor(rainbow[level % rainbow.length]);
@@ -349,10 +394,10 @@ public class DotTreeGUIExtra extends DrawingGUI
         g.fillOval((int) tree.getPoint().getX() - dotRadius, (int) tree.getPoint().getY() - dotRadius, dotRadius * 2, dotRadius * 2);
 
         // Drawing the horizontal line.
-        g.drawLine(tree.getX1(), (int) tree.getPoint().getY(), tree.getX2(), (int) tree.getPoint().getY());
+        g.drawLine((int) tree.getX1(), (int) tree.getPoint().getY(), (int) tree.getX2(), (int) tree.getPoint().getY());
 
         // Drawing the vertical line.
-        g.drawLine((int) tree.getPoint().getX(), tree.getY1(), (int) tree.getPoint().getX(), tree.getY2());
+        g.drawLine((int) tree.getPoint().getX(), (int) tree.getY1(), (int) tree.getPoint().getX(), (int) tree.getY2());
 
         // Recurse with the children of the parent node. Drawing all the descendants of the node.
         if (tree.hasChild(1))
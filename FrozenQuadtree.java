@@ -0,0 +1,286 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A Frozen (Read-Only) Point Quadtree
+ * Compiled from a PointQuadtree by PointQuadtree.freeze(), for workloads which query far more often than they change.
+ *
+ * The nodes are stored as parallel arrays (structure of arrays), in depth-first pre-order:
+ * xs[i], ys[i] hold the location of node i's point, child[4 * i + q - 1] the index of its child in quadrant q (or -1),
+ * and bounds[4 * i ... 4 * i + 3] its region (x1, y1, x2, y2), or its box if the quadtree prunes with tight bounds.
+ * A query walks the arrays with an int stack, so it follows no per-node references and makes no Point2D calls;
+ * the points themselves are only touched when they are reported. As node i's subtree is nodes i to i + counts[i] - 1,
+ * a subtree whose box lies inside the query is reported (or counted) as one run of the arrays.
+ *
+ * The queries visit the same nodes, and make the same Geometry calls, as the corresponding PointQuadtree queries.
+ * Later changes to the PointQuadtree (or moving its points) are not reflected; freeze it again instead.
+ *
+ * @author Carter Kruse & John Deforest, Dartmouth CS 10, Spring 2022
+ */
+public class FrozenQuadtree<E extends Point2D>
+{
+    private final double[] xs, ys; // Location of the point at each node.
+    private final int[] child; // Index of the child in each quadrant (4 per node), or -1 if there is none.
+    private final double[] bounds; // Region (or box) of each node (4 per node: x1, y1, x2, y2).
+    private final double[] boxes; // Box around the points in each node's subtree (4 per node: x1, y1, x2, y2).
+    private final int[] counts; // Number of points in each node's subtree.
+    private final Object[] items; // The point at each node.
+    private final int size; // Number of nodes (and points).
+    private final int maxStack; // Most entries the traversal stack can hold at once.
+
+    /**
+     * Constructor
+     *
+     * Compiles the quadtree into arrays, numbering its nodes in pre-order (the root is 0, and each node's
+     * subtree follows it contiguously).
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    FrozenQuadtree(PointQuadtree<E> tree)
+    {
+        int n = tree.getPoint() == null ? 0 : tree.size();
+        boolean tight = tree.isTightBounds(); // Pruning with the same bounds as the quadtree's queries.
+
+        xs = new double[n];
+        ys = new double[n];
+        child = new int[4 * n];
+        bounds = new double[4 * n];
+        boxes = new double[4 * n];
+        counts = new int[n];
+        items = new Object[n];
+        size = n;
+
+        // The nodes waiting to be numbered, with the slot of the child array (parent and quadrant) each hangs from.
+        PointQuadtree<E>[] nodes = (PointQuadtree<E>[]) new PointQuadtree[64];
+        int[] slots = new int[64];
+        int top = 0, next = 0, deepest = 0;
+
+        if (n > 0)
+        {
+            nodes[top] = tree;
+            slots[top] = -1;
+            top += 1;
+        }
+
+        while (top > 0)
+        {
+            top -= 1;
+            PointQuadtree<E> node = nodes[top];
+            int slot = slots[top];
+
+            int i = next;
+            next += 1;
+
+            // Linking the node to its parent.
+            if (slot >= 0) child[slot] = i;
+
+            E point = node.getPoint();
+            xs[i] = point.getX();
+            ys[i] = point.getY();
+            items[i] = point;
+            bounds[4 * i] = tight ? node.getBoxX1() : node.getX1();
+            bounds[4 * i + 1] = tight ? node.getBoxY1() : node.getY1();
+            bounds[4 * i + 2] = tight ? node.getBoxX2() : node.getX2();
+            bounds[4 * i + 3] = tight ? node.getBoxY2() : node.getY2();
+            boxes[4 * i] = node.getBoxX1();
+            boxes[4 * i + 1] = node.getBoxY1();
+            boxes[4 * i + 2] = node.getBoxX2();
+            boxes[4 * i + 3] = node.getBoxY2();
+            counts[i] = node.size();
+
+            // Pushing the children in reverse, so they are numbered in order (1-4).
+            if (top + 4 > nodes.length)
+            {
+                nodes = Arrays.copyOf(nodes, nodes.length * 2);
+                slots = Arrays.copyOf(slots, slots.length * 2);
+            }
+
+            for (int quadrant = 4; quadrant >= 1; quadrant -= 1)
+            {
+                child[4 * i + quadrant - 1] = -1;
+                PointQuadtree<E> c = node.getChild(quadrant);
+
+                if (c != null)
+                {
+                    nodes[top] = c;
+                    slots[top] = 4 * i + quadrant - 1;
+                    top += 1;
+                }
+            }
+
+            deepest = Math.max(deepest, top);
+        }
+
+        maxStack = Math.max(deepest, 1);
+    }
+
+    /**
+     * Finds the number of points in the frozen quadtree.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Finds all points within the circle.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     *
+     * @return The points in the circle.
+     */
+    public List<E> findInCircle(double cx, double cy, double cr)
+    {
+        List<E> pointsInCircle = new ArrayList<>();
+        forEachInCircle(cx, cy, cr, pointsInCircle::add);
+        return pointsInCircle;
+    }
+
+    /**
+     * Passes each point within the circle to the action, in the same order as PointQuadtree.forEachInCircle.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     * @param action What to do with each point in the circle.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachInCircle(double cx, double cy, double cr, Consumer<? super E> action)
+    {
+        if (size == 0) return;
+
+        // A fresh stack for each query, so a frozen quadtree can be queried from several threads at once.
+        int[] stack = new int[maxStack];
+        int top = 0;
+        stack[top++] = 0;
+
+        while (top > 0)
+        {
+            int i = stack[--top];
+            int b = 4 * i;
+
+            if (Geometry.circleIntersectsRectangle(cx, cy, cr, bounds[b], bounds[b + 1], bounds[b + 2], bounds[b + 3]))
+            {
+                // The whole subtree is inside the circle: passing on its run of points, with no further tests.
+                if (counts[i] > 1 && Geometry.rectangleInCircle(cx, cy, cr, boxes[b], boxes[b + 1], boxes[b + 2], boxes[b + 3]))
+                {
+                    for (int j = i; j < i + counts[i]; j += 1)
+                    {
+                        action.accept((E) items[j]);
+                    }
+                    continue;
+                }
+
+                if (Geometry.pointInCircle(xs[i], ys[i], cx, cy, cr))
+                {
+                    action.accept((E) items[i]);
+                }
+
+                // Pushing the children in reverse, so they are visited in order (1-4).
+                if (child[b + 3] >= 0) stack[top++] = child[b + 3];
+                if (child[b + 2] >= 0) stack[top++] = child[b + 2];
+                if (child[b + 1] >= 0) stack[top++] = child[b + 1];
+                if (child[b] >= 0) stack[top++] = child[b];
+            }
+        }
+    }
+
+    /**
+     * Counts the points within the circle, without touching the points at all.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     *
+     * @return The number of points in the circle.
+     */
+    public int countInCircle(double cx, double cy, double cr)
+    {
+        if (size == 0) return 0;
+
+        int count = 0;
+
+        int[] stack = new int[maxStack];
+        int top = 0;
+        stack[top++] = 0;
+
+        while (top > 0)
+        {
+            int i = stack[--top];
+            int b = 4 * i;
+
+            if (Geometry.circleIntersectsRectangle(cx, cy, cr, bounds[b], bounds[b + 1], bounds[b + 2], bounds[b + 3]))
+            {
+                if (counts[i] > 1 && Geometry.rectangleInCircle(cx, cy, cr, boxes[b], boxes[b + 1], boxes[b + 2], boxes[b + 3]))
+                {
+                    count += counts[i];
+                    continue;
+                }
+
+                if (Geometry.pointInCircle(xs[i], ys[i], cx, cy, cr)) count += 1;
+
+                if (child[b + 3] >= 0) stack[top++] = child[b + 3];
+                if (child[b + 2] >= 0) stack[top++] = child[b + 2];
+                if (child[b + 1] >= 0) stack[top++] = child[b + 1];
+                if (child[b] >= 0) stack[top++] = child[b];
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Finds all points within the rectangle (not on its edges, as in GeometryExtra.pointInRectangle),
+     * in the same order as PointQuadtree.findInRectangle.
+     *
+     * @param rx1 Top left x coordinate of rectangle.
+     * @param ry1 Top left y coordinate of rectangle.
+     * @param rx2 Bottom right x coordinate of rectangle.
+     * @param ry2 Bottom right y coordinate of rectangle.
+     *
+     * @return The points in the rectangle.
+     */
+    @SuppressWarnings("unchecked")
+    public List<E> findInRectangle(double rx1, double ry1, double rx2, double ry2)
+    {
+        List<E> pointsInRectangle = new ArrayList<>();
+        if (size == 0) return pointsInRectangle;
+
+        int[] stack = new int[maxStack];
+        int top = 0;
+        stack[top++] = 0;
+
+        while (top > 0)
+        {
+            int i = stack[--top];
+            int b = 4 * i;
+
+            if (!GeometryExtra.rectangleIntersectsRectangle(bounds[b], bounds[b + 1], bounds[b + 2], bounds[b + 3], rx1, ry1, rx2, ry2)) continue;
+
+            // The whole subtree is inside the rectangle (not on its edges): adding its run of points.
+            if (counts[i] > 1 && boxes[b] > rx1 && boxes[b + 2] < rx2 && boxes[b + 1] > ry1 && boxes[b + 3] < ry2)
+            {
+                for (int j = i; j < i + counts[i]; j += 1)
+                {
+                    pointsInRectangle.add((E) items[j]);
+                }
+                continue;
+            }
+
+            if (GeometryExtra.pointInRectangle(xs[i], ys[i], rx1, ry1, rx2, ry2))
+            {
+                pointsInRectangle.add((E) items[i]);
+            }
+
+            if (child[b + 3] >= 0) stack[top++] = child[b + 3];
+            if (child[b + 2] >= 0) stack[top++] = child[b + 2];
+            if (child[b + 1] >= 0) stack[top++] = child[b + 1];
+            if (child[b] >= 0) stack[top++] = child[b];
+        }
+
+        return pointsInRectangle;
+    }
+}
@@ -9,6 +9,8 @@ public class Geometry
 {
     private static int numInCircleTests = 0; // Keeps track of how many times pointInCircle() has been called.
     private static int numCircleRectangleTests = 0; // Keeps track of how many times circleIntersectsRectangle() has been called.
+    private static int numRectangleDistanceTests = 0; // Keeps track of how many times rectangleDistanceSquared() has been called.
+    private static int numRectangleInCircleTests = 0; // Keeps track of how many times rectangleInCircle() has been called.
 
     public static int getNumInCircleTests()
     {
@@ -30,6 +32,26 @@ public class Geometry
         numCircleRectangleTests = 0;
     }
 
+    public static int getNumRectangleDistanceTests()
+    {
+        return numRectangleDistanceTests;
+    }
+
+    public static void resetNumRectangleDistanceTests()
+    {
+        numRectangleDistanceTests = 0;
+    }
+
+    public static int getNumRectangleInCircleTests()
+    {
+        return numRectangleInCircleTests;
+    }
+
+    public static void resetNumRectangleInCircleTests()
+    {
+        numRectangleInCircleTests = 0;
+    }
+
     /**
      * Returns whether the point is within the circle.
      *
@@ -64,4 +86,42 @@ public class Geometry
         double closestY = Math.min(Math.max(cy, y1), y2);
         return (cx - closestX) * (cx - closestX) + (cy - closestY) * (cy - closestY) <= cr * cr;
     }
+
+    /**
+     * Returns the squared distance from the point to the closest point of the rectangle (0 if the point is inside).
+     * This is a lower bound on the squared distance to anything in the rectangle.
+     *
+     * @param px Point x coordinate.
+     * @param py Point y coordinate.
+     * @param x1 Rectangle min x.
+     * @param y1 Rectangle min y.
+     * @param x2 Rectangle max x.
+     * @param y2 Rectangle max y.
+     */
+    public static double rectangleDistanceSquared(double px, double py, double x1, double y1, double x2, double y2)
+    {
+        numRectangleDistanceTests += 1;
+        double closestX = Math.min(Math.max(px, x1), x2);
+        double closestY = Math.min(Math.max(py, y1), y2);
+        return (px - closestX) * (px - closestX) + (py - closestY) * (py - closestY);
+    }
+
+    /**
+     * Returns whether the rectangle is entirely within the circle (its farthest corner is within the circle).
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     * @param x1 Rectangle min x.
+     * @param y1 Rectangle min y.
+     * @param x2 Rectangle max x.
+     * @param y2 Rectangle max y.
+     */
+    public static boolean rectangleInCircle(double cx, double cy, double cr, double x1, double y1, double x2, double y2)
+    {
+        numRectangleInCircleTests += 1;
+        double farthestX = Math.max(cx - x1, x2 - cx);
+        double farthestY = Math.max(cy - y1, y2 - cy);
+        return farthestX * farthestX + farthestY * farthestY <= cr * cr;
+    }
 }
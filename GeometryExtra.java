@@ -7,6 +7,18 @@
  */
 public class GeometryExtra extends Geometry
 {
+    private static int numRectangleRectangleTests = 0; // Keeps track of how many times rectangleIntersectsRectangle() has been called.
+
+    public static int getNumRectangleRectangleTests()
+    {
+        return numRectangleRectangleTests;
+    }
+
+    public static void resetNumRectangleRectangleTests()
+    {
+        numRectangleRectangleTests = 0;
+    }
+
     /**
      * Returns whether the point is within the rectangle.
      *
@@ -21,4 +33,24 @@ public class GeometryExtra extends Geometry
     {
         return (px > rx1 && px < rx2) && (py > ry1 && py < ry2);
     }
+
+    /**
+     * Returns whether the region (a closed rectangle, holding the points on its edges) could hold a point within the
+     * query rectangle (which, as in pointInRectangle, does not hold the points on its edges).
+     * So a region which only touches the query rectangle along an edge does not intersect it.
+     *
+     * @param x1 Region min x.
+     * @param y1 Region min y.
+     * @param x2 Region max x.
+     * @param y2 Region max y.
+     * @param rx1 Top left x coordinate of query rectangle.
+     * @param ry1 Top left y coordinate of query rectangle.
+     * @param rx2 Bottom right x coordinate of query rectangle.
+     * @param ry2 Bottom right y coordinate of query rectangle.
+     */
+    public static boolean rectangleIntersectsRectangle(double x1, double y1, double x2, double y2, double rx1, double ry1, double rx2, double ry2)
+    {
+        numRectangleRectangleTests += 1;
+        return x1 < rx2 && x2 > rx1 && y1 < ry2 && y2 > ry1;
+    }
 }
@@ -0,0 +1,665 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+
+/**
+ * A Linear (Morton-Ordered) Quadtree
+ * Stores no tree at all: each point is given a 62-bit Z-order (Morton) key, by quantizing its x- and y-coordinates
+ * over the rectangle to 31 bits each and interleaving the bits, and the points are kept sorted by key in primitive arrays.
+ *
+ * Every quadtree cell (a square of quantized coordinates, halved at each level) is then a contiguous range of keys,
+ * so the points in any cell are found by binary search, and a query descends through the cells it overlaps,
+ * scanning the range of each cell which lies inside the query or holds only a few points.
+ * Building from a collection is just a sort.
+ *
+ * The points are expected to be in the rectangle (points outside it are kept in the cells along its edges).
+ * Unlike PointQuadtree, points at the same location are all kept. Inserting, removing and moving a point shift
+ * the arrays, so they cost O(n) in the worst case (a short move usually shifts only a few entries);
+ * this index favours building and querying.
+ *
+ * @author Carter Kruse & John Deforest, Dartmouth CS 10, Spring 2022
+ */
+public class LinearQuadtree<E extends Point2D> implements SpatialIndex<E>
+{
+    private static final int bits = 31; // Bits of each quantized coordinate (and the number of levels below the root cell).
+    private static final long cells = 1L << bits; // Quantized coordinates per axis.
+    private static final int scanThreshold = 16; // Cells holding at most this many points are scanned rather than split.
+
+    private final double x1, y1; // Upper-left corner of the region.
+    private final double x2, y2; // Bottom-right corner of the region.
+    private final double scaleX, scaleY; // Quantized coordinates per unit.
+
+    private long[] keys; // The Morton key of each point, sorted.
+    private double[] xs, ys; // Coordinates of each point (as of its insertion or last update).
+    private Object[] items; // The points, in key order.
+    private int size; // How many points the quadtree holds.
+
+
+    /**
+     * Constructor
+     *
+     * Initializes an empty quadtree over the rectangle.
+     */
+    public LinearQuadtree(double x1, double y1, double x2, double y2)
+    {
+        if (!(x2 > x1 && y2 > y1)) throw new IllegalArgumentException("Empty rectangle: " + x1 + ", " + y1 + ", " + x2 + ", " + y2);
+
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+        this.scaleX = cells / (x2 - x1);
+        this.scaleY = cells / (y2 - y1);
+
+        this.keys = new long[16];
+        this.xs = new double[16];
+        this.ys = new double[16];
+        this.items = new Object[16];
+    }
+
+    /**
+     * Builds a quadtree holding all the points, in the rectangle, by sorting them by key.
+     *
+     * @param points The points to hold in the quadtree.
+     *
+     * @return The quadtree.
+     */
+    public static <E extends Point2D> LinearQuadtree<E> build(Collection<E> points, double x1, double y1, double x2, double y2)
+    {
+        LinearQuadtree<E> tree = new LinearQuadtree<>(x1, y1, x2, y2);
+
+        int n = points.size();
+        Object[] unsorted = points.toArray();
+        long[] unsortedKeys = new long[n];
+        double[] unsortedXs = new double[n], unsortedYs = new double[n];
+
+        for (int i = 0; i < n; i += 1)
+        {
+            Point2D point = (Point2D) unsorted[i];
+            unsortedXs[i] = point.getX();
+            unsortedYs[i] = point.getY();
+            unsortedKeys[i] = tree.key(unsortedXs[i], unsortedYs[i]);
+        }
+
+        int[] order = sortByKey(unsortedKeys);
+
+        tree.ensureCapacity(n);
+        for (int i = 0; i < n; i += 1)
+        {
+            tree.keys[i] = unsortedKeys[order[i]];
+            tree.xs[i] = unsortedXs[order[i]];
+            tree.ys[i] = unsortedYs[order[i]];
+            tree.items[i] = unsorted[order[i]];
+        }
+        tree.size = n;
+
+        return tree;
+    }
+
+    // Getters
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Inserts the point into the quadtree, after any points with the same key.
+     */
+    public void insert(E point)
+    {
+        double x = point.getX(), y = point.getY();
+        long key = key(x, y);
+        int i = upperBound(key, 0, size);
+
+        ensureCapacity(size + 1);
+        shift(i, size, i + 1);
+        set(i, key, x, y, point);
+        size += 1;
+    }
+
+    /**
+     * Removes the point from the quadtree.
+     *
+     * @param point The point, at the location where it was inserted (or last updated).
+     *
+     * @return Whether the point was found in the quadtree.
+     */
+    public boolean remove(E point)
+    {
+        int i = indexOf(point, key(point.getX(), point.getY()));
+        if (i < 0) return false;
+
+        shift(i + 1, size, i);
+        size -= 1;
+        items[size] = null;
+        return true;
+    }
+
+    /**
+     * Removes all the points in the collection (compared by identity) from the quadtree, in a single pass over the arrays.
+     *
+     * @return Whether any point was removed.
+     */
+    public boolean removeAll(Collection<E> points)
+    {
+        Set<E> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        removed.addAll(points);
+
+        // Compacting the arrays, keeping the order of the points which stay.
+        int kept = 0;
+        for (int i = 0; i < size; i += 1)
+        {
+            if (removed.contains(items[i])) continue;
+
+            set(kept, keys[i], xs[i], ys[i], items[i]);
+            kept += 1;
+        }
+
+        if (kept == size) return false;
+
+        Arrays.fill(items, kept, size, null);
+        size = kept;
+        return true;
+    }
+
+    /**
+     * Updates the quadtree after the point has moved from (oldX, oldY) to its current location.
+     * The point keeps its place if its key is unchanged; otherwise only the entries between its old and new places shift.
+     *
+     * @param point The point, already at its new location.
+     * @param oldX The x-coordinate of the point when it was inserted (or last updated).
+     * @param oldY The y-coordinate of the point when it was inserted (or last updated).
+     *
+     * @return Whether the point was found in the quadtree (at its old location).
+     */
+    public boolean update(E point, double oldX, double oldY)
+    {
+        int i = indexOf(point, key(oldX, oldY));
+        if (i < 0) return false;
+
+        double x = point.getX(), y = point.getY();
+        long key = key(x, y);
+
+        // Moving the entries between the old and new places over by one, toward the old place.
+        if (key > keys[i])
+        {
+            int j = upperBound(key, i + 1, size);
+            shift(i + 1, j, i);
+            i = j - 1;
+        }
+
+        else if (key < keys[i])
+        {
+            int j = upperBound(key, 0, i);
+            shift(j, i, j + 1);
+            i = j;
+        }
+
+        set(i, key, x, y, point);
+        return true;
+    }
+
+    /**
+     * Builds a list of all the points in the quadtree, in key order.
+     *
+     * @return The points in the quadtree.
+     */
+    @SuppressWarnings("unchecked")
+    public List<E> allPoints()
+    {
+        List<E> pointsList = new ArrayList<>(size);
+        for (int i = 0; i < size; i += 1)
+        {
+            pointsList.add((E) items[i]);
+        }
+        return pointsList;
+    }
+
+    /**
+     * Uses the quadtree to find all points within the circle.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     *
+     * @return The points in the circle.
+     */
+    public List<E> findInCircle(double cx, double cy, double cr)
+    {
+        List<E> pointsInCircle = new ArrayList<>();
+        forEachInCircle(cx, cy, cr, pointsInCircle::add);
+        return pointsInCircle;
+    }
+
+    /**
+     * Passes each point within the circle to the action (in key order), without building a list.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     * @param action What to do with each point in the circle.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachInCircle(double cx, double cy, double cr, Consumer<? super E> action)
+    {
+        scanCircle(cx, cy, cr, i ->
+        {
+            if (Geometry.pointInCircle(xs[i], ys[i], cx, cy, cr)) action.accept((E) items[i]);
+            return false;
+        });
+    }
+
+    /**
+     * Returns whether there is a point other than self (compared by identity) within the circle, stopping at the first one.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     * @param self The point to ignore, such as the point at the center of the circle.
+     */
+    public boolean anyInCircleExcept(double cx, double cy, double cr, E self)
+    {
+        return scanCircle(cx, cy, cr, i -> items[i] != self && Geometry.pointInCircle(xs[i], ys[i], cx, cy, cr));
+    }
+
+    /**
+     * Uses the quadtree to find all points within the rectangle (not on its edges, as in GeometryExtra.pointInRectangle).
+     *
+     * @param rx1 Top left x coordinate of rectangle.
+     * @param ry1 Top left y coordinate of rectangle.
+     * @param rx2 Bottom right x coordinate of rectangle.
+     * @param ry2 Bottom right y coordinate of rectangle.
+     *
+     * @return The points in the rectangle, in key order.
+     */
+    @SuppressWarnings("unchecked")
+    public List<E> findInRectangle(double rx1, double ry1, double rx2, double ry2)
+    {
+        List<E> pointsInRectangle = new ArrayList<>();
+        if (!(rx2 > rx1 && ry2 > ry1)) return pointsInRectangle;
+
+        scan(quantize(rx1, x1, scaleX), quantize(ry1, y1, scaleY), quantize(rx2, x1, scaleX), quantize(ry2, y1, scaleY),
+                false, 0, 0, 0, i ->
+                {
+                    if (GeometryExtra.pointInRectangle(xs[i], ys[i], rx1, ry1, rx2, ry2)) pointsInRectangle.add((E) items[i]);
+                    return false;
+                });
+
+        return pointsInRectangle;
+    }
+
+    /**
+     * Finds the k points nearest to the location, with a best-first search over the cells.
+     *
+     * @param x Location x.
+     * @param y Location y.
+     * @param k How many points to find.
+     *
+     * @return The nearest points (fewer if the quadtree holds fewer than k), from nearest to farthest.
+     */
+    @SuppressWarnings("unchecked")
+    public List<E> nearest(double x, double y, int k)
+    {
+        List<E> nearestPoints = new ArrayList<>();
+        if (k <= 0 || size == 0) return nearestPoints;
+
+        // The cells still to visit, closest first; and the best points so far, farthest first (at most k).
+        PriorityQueue<Candidate<int[]>> nodes = new PriorityQueue<>((a, b) -> Double.compare(a.distance, b.distance));
+        PriorityQueue<Candidate<E>> best = new PriorityQueue<>((a, b) -> Double.compare(b.distance, a.distance));
+
+        nodes.add(new Candidate<>(new int[] {0, 0, 0, 0, size}, 0));
+
+        while (!nodes.isEmpty())
+        {
+            Candidate<int[]> closest = nodes.poll();
+
+            // No remaining cell can hold a point nearer than the k-th best so far.
+            if (best.size() == k && closest.distance > best.peek().distance) break;
+
+            int level = closest.item[0], qx = closest.item[1], qy = closest.item[2];
+            int start = closest.item[3], end = closest.item[4];
+
+            // Offering each point of a small (or smallest) cell.
+            if (end - start <= scanThreshold || level == bits)
+            {
+                for (int i = start; i < end; i += 1)
+                {
+                    double dx = xs[i] - x, dy = ys[i] - y;
+                    double distance = dx * dx + dy * dy;
+
+                    if (best.size() < k)
+                    {
+                        best.add(new Candidate<>((E) items[i], distance));
+                    }
+
+                    else if (distance < best.peek().distance)
+                    {
+                        best.poll();
+                        best.add(new Candidate<>((E) items[i], distance));
+                    }
+                }
+                continue;
+            }
+
+            // Queueing the quarters of the cell which hold points, and could still hold one of the k nearest.
+            long half = 1L << (bits - level - 1);
+            long quarter = half * half;
+            long base = interleave(qx, qy);
+
+            int from = start;
+            for (int c = 0; c < 4; c += 1)
+            {
+                int to = c == 3 ? end : lowerBound(base + (c + 1) * quarter, from, end);
+                if (to > from)
+                {
+                    long cqx = qx + (c & 1) * half, cqy = qy + (c >> 1) * half;
+                    double bound = Geometry.rectangleDistanceSquared(x, y, lowX(cqx), lowY(cqy), highX(cqx, half), highY(cqy, half));
+
+                    if (best.size() < k || bound <= best.peek().distance)
+                    {
+                        nodes.add(new Candidate<>(new int[] {level + 1, (int) cqx, (int) cqy, from, to}, bound));
+                    }
+                }
+                from = to;
+            }
+        }
+
+        // Emptying the best points farthest first, so they are listed nearest first.
+        while (!best.isEmpty())
+        {
+            nearestPoints.add(best.poll().item);
+        }
+        Collections.reverse(nearestPoints);
+
+        return nearestPoints;
+    }
+
+    // Helper Methods
+
+    /**
+     * Passes the index of each point in the cells overlapping the circle to the visitor, stopping if it returns true.
+     *
+     * @return Whether the visitor stopped the scan.
+     */
+    private boolean scanCircle(double cx, double cy, double cr, IntPredicate visitor)
+    {
+        if (!(cr >= 0)) return false;
+
+        // The circle's bounding box, widened by one quantized step for rounding at its edges.
+        return scan(quantize(cx - cr, x1, scaleX) - 1, quantize(cy - cr, y1, scaleY) - 1,
+                quantize(cx + cr, x1, scaleX) + 1, quantize(cy + cr, y1, scaleY) + 1, true, cx, cy, cr, visitor);
+    }
+
+    /**
+     * Descends through the cells overlapping the box of quantized coordinates (and the circle, if one is given),
+     * passing the index of each point in the cells it scans to the visitor, in key order.
+     *
+     * A cell is scanned once it lies inside the box, holds at most scanThreshold points, or cannot be split;
+     * otherwise its quarters are found by binary search within its range, and descended into.
+     *
+     * @return Whether the visitor stopped the scan (by returning true).
+     */
+    private boolean scan(long qx1, long qy1, long qx2, long qy2, boolean circle, double cx, double cy, double cr, IntPredicate visitor)
+    {
+        if (size == 0) return false;
+
+        // A stack of cells (level, qx, qy, start, end) of its own, so a scan may be run from inside another scan's visitor,
+        // or from several threads at once.
+        int[] stack = new int[5 * (3 * bits + 2)];
+        int top = 0;
+        top = push(stack, top, 0, 0, 0, 0, size);
+
+        while (top > 0)
+        {
+            top -= 5;
+            int level = stack[top], qx = stack[top + 1], qy = stack[top + 2], start = stack[top + 3], end = stack[top + 4];
+
+            long side = 1L << (bits - level);
+
+            // Skipping cells outside the box, or (with the Geometry helper method) outside the circle.
+            if (qx > qx2 || qx + side - 1 < qx1 || qy > qy2 || qy + side - 1 < qy1) continue;
+            if (circle && !Geometry.circleIntersectsRectangle(cx, cy, cr, lowX(qx), lowY(qy), highX(qx, side), highY(qy, side))) continue;
+
+            boolean inside = qx >= qx1 && qx + side - 1 <= qx2 && qy >= qy1 && qy + side - 1 <= qy2;
+
+            if (inside || end - start <= scanThreshold || level == bits)
+            {
+                for (int i = start; i < end; i += 1)
+                {
+                    if (visitor.test(i)) return true;
+                }
+                continue;
+            }
+
+            // Splitting the cell into quarters (in key order: upper-left, upper-right, lower-left, lower-right).
+            long half = side / 2;
+            long quarter = half * half;
+            long base = interleave(qx, qy);
+
+            int s1 = lowerBound(base + quarter, start, end);
+            int s2 = lowerBound(base + 2 * quarter, s1, end);
+            int s3 = lowerBound(base + 3 * quarter, s2, end);
+
+            // Pushing the non-empty quarters in reverse, so they are visited in key order.
+            if (end > s3) top = push(stack, top, level + 1, (int) (qx + half), (int) (qy + half), s3, end);
+            if (s3 > s2) top = push(stack, top, level + 1, qx, (int) (qy + half), s2, s3);
+            if (s2 > s1) top = push(stack, top, level + 1, (int) (qx + half), qy, s1, s2);
+            if (s1 > start) top = push(stack, top, level + 1, qx, qy, start, s1);
+        }
+
+        return false;
+    }
+
+    /**
+     * Pushes a cell onto the stack, returning the new top.
+     */
+    private static int push(int[] stack, int top, int level, int qx, int qy, int start, int end)
+    {
+        stack[top] = level;
+        stack[top + 1] = qx;
+        stack[top + 2] = qy;
+        stack[top + 3] = start;
+        stack[top + 4] = end;
+        return top + 5;
+    }
+
+    /**
+     * Returns the Morton key of the location.
+     */
+    private long key(double x, double y)
+    {
+        return interleave(quantize(x, x1, scaleX), quantize(y, y1, scaleY));
+    }
+
+    /**
+     * Returns the Morton key of the location within the rectangle (as a linear quadtree over the rectangle would key it).
+     * Also used by PointQuadtree.insertAll, to order a batch of points along the curve.
+     */
+    static long key(double x, double y, double x1, double y1, double x2, double y2)
+    {
+        return interleave(quantize(x, x1, cells / (x2 - x1)), quantize(y, y1, cells / (y2 - y1)));
+    }
+
+    /**
+     * Returns the quantized coordinate (0 to cells - 1, clamped at the edges of the rectangle).
+     */
+    private static long quantize(double coordinate, double origin, double scale)
+    {
+        long q = (long) Math.floor((coordinate - origin) * scale);
+        return Math.max(0, Math.min(cells - 1, q));
+    }
+
+    /**
+     * Interleaves the bits of the quantized coordinates (x in the even bits, y in the odd bits).
+     */
+    private static long interleave(long qx, long qy)
+    {
+        return spread(qx) | (spread(qy) << 1);
+    }
+
+    /**
+     * Spreads the low 31 bits of the value out to the even bits.
+     */
+    private static long spread(long v)
+    {
+        v &= 0x7FFFFFFFL;
+        v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v << 2)) & 0x3333333333333333L;
+        v = (v | (v << 1)) & 0x5555555555555555L;
+        return v;
+    }
+
+    /**
+     * Returns the left edge of the cell, one quantized step further out for rounding (unbounded at the rectangle's edge).
+     */
+    private double lowX(long qx)
+    {
+        return qx == 0 ? Double.NEGATIVE_INFINITY : x1 + (qx - 1) / scaleX;
+    }
+
+    /**
+     * Returns the right edge of the cell, one quantized step further out for rounding (unbounded at the rectangle's edge).
+     */
+    private double highX(long qx, long side)
+    {
+        return qx + side >= cells ? Double.POSITIVE_INFINITY : x1 + (qx + side + 1) / scaleX;
+    }
+
+    /**
+     * Returns the top edge of the cell, one quantized step further out for rounding (unbounded at the rectangle's edge).
+     */
+    private double lowY(long qy)
+    {
+        return qy == 0 ? Double.NEGATIVE_INFINITY : y1 + (qy - 1) / scaleY;
+    }
+
+    /**
+     * Returns the bottom edge of the cell, one quantized step further out for rounding (unbounded at the rectangle's edge).
+     */
+    private double highY(long qy, long side)
+    {
+        return qy + side >= cells ? Double.POSITIVE_INFINITY : y1 + (qy + side + 1) / scaleY;
+    }
+
+    /**
+     * Returns the first index in [from, to) whose key is at least the given key (to if there is none).
+     */
+    private int lowerBound(long key, int from, int to)
+    {
+        while (from < to)
+        {
+            int mid = (from + to) >>> 1;
+            if (keys[mid] < key) from = mid + 1;
+            else to = mid;
+        }
+        return from;
+    }
+
+    /**
+     * Returns the first index in [from, to) whose key is greater than the given key (to if there is none).
+     */
+    private int upperBound(long key, int from, int to)
+    {
+        while (from < to)
+        {
+            int mid = (from + to) >>> 1;
+            if (keys[mid] <= key) from = mid + 1;
+            else to = mid;
+        }
+        return from;
+    }
+
+    /**
+     * Returns the index of the point (compared by identity) among the points with the key, or -1 if it is not there.
+     */
+    private int indexOf(E point, long key)
+    {
+        for (int i = lowerBound(key, 0, size); i < size && keys[i] == key; i += 1)
+        {
+            if (items[i] == point) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Stores the point at the index.
+     */
+    private void set(int i, long key, double x, double y, Object point)
+    {
+        keys[i] = key;
+        xs[i] = x;
+        ys[i] = y;
+        items[i] = point;
+    }
+
+    /**
+     * Moves the entries [from, to) to start at the destination.
+     */
+    private void shift(int from, int to, int destination)
+    {
+        int length = to - from;
+        if (length <= 0) return;
+
+        System.arraycopy(keys, from, keys, destination, length);
+        System.arraycopy(xs, from, xs, destination, length);
+        System.arraycopy(ys, from, ys, destination, length);
+        System.arraycopy(items, from, items, destination, length);
+    }
+
+    /**
+     * Grows the arrays (at least doubling them) to hold the given number of points.
+     */
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity <= keys.length) return;
+
+        int length = Math.max(capacity, keys.length * 2);
+        keys = Arrays.copyOf(keys, length);
+        xs = Arrays.copyOf(xs, length);
+        ys = Arrays.copyOf(ys, length);
+        items = Arrays.copyOf(items, length);
+    }
+
+    /**
+     * Returns the indices of the keys in sorted order (a stable bottom-up merge sort, so no key is boxed).
+     */
+    static int[] sortByKey(long[] keys)
+    {
+        int n = keys.length;
+        int[] order = new int[n], merged = new int[n];
+        for (int i = 0; i < n; i += 1)
+        {
+            order[i] = i;
+        }
+
+        for (int width = 1; width < n; width *= 2)
+        {
+            for (int lo = 0; lo < n; lo += 2 * width)
+            {
+                int mid = Math.min(lo + width, n), hi = Math.min(lo + 2 * width, n);
+                int a = lo, b = mid;
+
+                for (int i = lo; i < hi; i += 1)
+                {
+                    if (a < mid && (b >= hi || keys[order[a]] <= keys[order[b]])) merged[i] = order[a++];
+                    else merged[i] = order[b++];
+                }
+            }
+
+            int[] swap = order;
+            order = merged;
+            merged = swap;
+        }
+
+        return order;
+    }
+}
@@ -0,0 +1,331 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * An Off-Heap Point Quadtree
+ * Stores each point as a long id at a 2D position, with the same splits and edge cases as PointQuadtree,
+ * but keeps the nodes in native memory (direct ByteBuffers) instead of as objects.
+ *
+ * The Java heap only holds this handle and its table of buffers, so a tree of 100M points neither needs a heap
+ * large enough for 100M node and point objects, nor gives the garbage collector anything to trace.
+ * The caller maps the ids back to its own records (for example, an index into its arrays or a database key).
+ *
+ * Each node takes nodeBytes bytes: its point (x, y), its region (x1, y1, x2, y2), the index of each child
+ * (-1 for none) and the id. Nodes are numbered in the order they are inserted, and stored in chunks of
+ * chunkNodes nodes, each chunk a separate buffer (a single ByteBuffer is limited to 2 GB). The first chunk starts
+ * with room for firstChunkNodes nodes and doubles (copying its nodes) until it is full size, so a small tree takes
+ * little native memory.
+ * The native memory is released when the handle is garbage collected.
+ *
+ * @author Carter Kruse & John Deforest, Dartmouth CS 10, Spring 2022
+ */
+public class OffHeapQuadtree
+{
+    // Offsets (in bytes) of the fields of a node.
+    private static final int xOffset = 0, yOffset = 8;
+    private static final int x1Offset = 16, y1Offset = 24, x2Offset = 32, y2Offset = 40;
+    private static final int childOffset = 48; // Four ints, for quadrants 1-4.
+    private static final int idOffset = 64;
+    private static final int nodeBytes = 72;
+
+    private static final int chunkShift = 20; // Each chunk holds 2^20 nodes (72 MB).
+    private static final int chunkNodes = 1 << chunkShift;
+    private static final int chunkMask = chunkNodes - 1;
+    private static final int firstChunkNodes = 1 << 10; // The first chunk starts with room for 2^10 nodes (72 KB).
+
+    private final double x1, y1; // Upper-left corner of the region.
+    private final double x2, y2; // Bottom-right corner of the region.
+
+    private ByteBuffer[] chunks = new ByteBuffer[4]; // The nodes, chunkNodes per buffer (allocated as needed, the first one growing).
+    private int size; // Number of nodes (and points).
+
+    /**
+     * Constructor
+     *
+     * Initializes an empty quadtree over the rectangle. The first point inserted anchors it.
+     */
+    public OffHeapQuadtree(double x1, double y1, double x2, double y2)
+    {
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+    }
+
+    /**
+     * Finds the number of points in the quadtree.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Finds the native memory used by the nodes, in bytes (including the unused part of the last chunk).
+     */
+    public long nativeBytes()
+    {
+        long bytes = 0;
+        for (ByteBuffer chunk : chunks)
+        {
+            if (chunk != null) bytes += chunk.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Inserts the point into the tree.
+     *
+     * Edge Cases: As in PointQuadtree, a point at the same x- or y-coordinate as a parent goes to the quadrant with the
+     * lowest number (1-4), and a point at the same location as another replaces its id.
+     *
+     * @param id The id of the point (returned by the queries).
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     */
+    public void insert(long id, double x, double y)
+    {
+        // An empty quadtree takes the point as its root.
+        if (size == 0)
+        {
+            addNode(id, x, y, x1, y1, x2, y2);
+            return;
+        }
+
+        // Descending iteratively from the root.
+        int node = 0;
+
+        while (true)
+        {
+            ByteBuffer chunk = chunks[node >>> chunkShift];
+            int base = (node & chunkMask) * nodeBytes;
+
+            double px = chunk.getDouble(base + xOffset), py = chunk.getDouble(base + yOffset);
+
+            // Checking to ensure the point is not placed in the same location as the original.
+            if (x == px && y == py)
+            {
+                chunk.putLong(base + idOffset, id); // Replacing the original id.
+                return;
+            }
+
+            int quadrant;
+            if (x >= px && y <= py) quadrant = 1;
+            else if (x <= px && y <= py) quadrant = 2;
+            else if (x <= px && y >= py) quadrant = 3;
+            else quadrant = 4;
+
+            int childPosition = base + childOffset + 4 * (quadrant - 1);
+            int child = chunk.getInt(childPosition);
+
+            // If the quadrant already has a child, descend to add the point.
+            if (child >= 0)
+            {
+                node = child;
+                continue;
+            }
+
+            // Otherwise, create a new node with the appropriate bounds for the quadrant.
+            double nx1 = chunk.getDouble(base + x1Offset), ny1 = chunk.getDouble(base + y1Offset);
+            double nx2 = chunk.getDouble(base + x2Offset), ny2 = chunk.getDouble(base + y2Offset);
+
+            int added;
+            if (quadrant == 1) added = addNode(id, x, y, px, ny1, nx2, py);
+            else if (quadrant == 2) added = addNode(id, x, y, nx1, ny1, px, py);
+            else if (quadrant == 3) added = addNode(id, x, y, nx1, py, px, ny2);
+            else added = addNode(id, x, y, px, py, nx2, ny2);
+
+            // Linking it from the parent's chunk as it is now (the first chunk is replaced when it doubles).
+            chunks[node >>> chunkShift].putInt(childPosition, added);
+            return;
+        }
+    }
+
+    /**
+     * Finds the ids of all points within the circle.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     *
+     * @return The ids of the points in the circle.
+     */
+    public long[] findInCircle(double cx, double cy, double cr)
+    {
+        IdList ids = new IdList();
+        forEachInCircle(cx, cy, cr, ids);
+        return ids.toArray();
+    }
+
+    /**
+     * Passes the id of each point within the circle to the action, without building an array.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     * @param action What to do with the id of each point in the circle.
+     */
+    public void forEachInCircle(double cx, double cy, double cr, LongConsumer action)
+    {
+        // An empty quadtree has no points.
+        if (size == 0) return;
+
+        int[] stack = new int[64]; // Node indices; each query has its own stack, so queries may be nested.
+        int top = 0;
+        stack[top++] = 0;
+
+        while (top > 0)
+        {
+            int node = stack[--top];
+            ByteBuffer chunk = chunks[node >>> chunkShift];
+            int base = (node & chunkMask) * nodeBytes;
+
+            // Using the Geometry helper method to determine if the circle intersects the node's region.
+            if (Geometry.circleIntersectsRectangle(cx, cy, cr, chunk.getDouble(base + x1Offset), chunk.getDouble(base + y1Offset),
+                    chunk.getDouble(base + x2Offset), chunk.getDouble(base + y2Offset)))
+            {
+                if (Geometry.pointInCircle(chunk.getDouble(base + xOffset), chunk.getDouble(base + yOffset), cx, cy, cr))
+                {
+                    action.accept(chunk.getLong(base + idOffset));
+                }
+
+                // Pushing the children in reverse, so they are visited in order (1-4).
+                if (top + 4 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                top = pushChildren(chunk, base, stack, top);
+            }
+        }
+    }
+
+    /**
+     * Finds the ids of all points within the rectangle (not on its edges, as in GeometryExtra.pointInRectangle).
+     *
+     * @param rx1 Top left x coordinate of rectangle.
+     * @param ry1 Top left y coordinate of rectangle.
+     * @param rx2 Bottom right x coordinate of rectangle.
+     * @param ry2 Bottom right y coordinate of rectangle.
+     *
+     * @return The ids of the points in the rectangle.
+     */
+    public long[] findInRectangle(double rx1, double ry1, double rx2, double ry2)
+    {
+        IdList ids = new IdList();
+
+        // An empty quadtree has no points.
+        if (size == 0) return ids.toArray();
+
+        int[] stack = new int[64]; // Node indices; each query has its own stack, so queries may be nested.
+        int top = 0;
+        stack[top++] = 0;
+
+        while (top > 0)
+        {
+            int node = stack[--top];
+            ByteBuffer chunk = chunks[node >>> chunkShift];
+            int base = (node & chunkMask) * nodeBytes;
+
+            // Skipping regions entirely outside the rectangle (a point on the rectangle's edge is outside it).
+            if (!GeometryExtra.rectangleIntersectsRectangle(chunk.getDouble(base + x1Offset), chunk.getDouble(base + y1Offset),
+                    chunk.getDouble(base + x2Offset), chunk.getDouble(base + y2Offset), rx1, ry1, rx2, ry2)) continue;
+
+            if (GeometryExtra.pointInRectangle(chunk.getDouble(base + xOffset), chunk.getDouble(base + yOffset), rx1, ry1, rx2, ry2))
+            {
+                ids.accept(chunk.getLong(base + idOffset));
+            }
+
+            if (top + 4 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+            top = pushChildren(chunk, base, stack, top);
+        }
+
+        return ids.toArray();
+    }
+
+    // Helper Methods
+
+    /**
+     * Appends a node holding the point, with no children, returning its index.
+     */
+    private int addNode(long id, double x, double y, double nx1, double ny1, double nx2, double ny2)
+    {
+        if (size == Integer.MAX_VALUE) throw new IllegalStateException("Off-heap quadtree is full: " + size + " points");
+
+        int node = size;
+        int chunkIndex = node >>> chunkShift;
+
+        if (chunkIndex == chunks.length) chunks = Arrays.copyOf(chunks, chunks.length * 2);
+
+        ByteBuffer chunk = chunks[chunkIndex];
+        int base = (node & chunkMask) * nodeBytes;
+
+        // Allocating the next chunk of native memory when the last one is full, or doubling the first one.
+        if (chunk == null)
+        {
+            chunk = allocate(chunkIndex == 0 ? firstChunkNodes : chunkNodes);
+            chunks[chunkIndex] = chunk;
+        }
+
+        else if (base == chunk.capacity())
+        {
+            chunk = allocate(2 * chunk.capacity() / nodeBytes).put(chunk.duplicate().clear());
+            chunks[chunkIndex] = chunk;
+        }
+
+        chunk.putDouble(base + xOffset, x);
+        chunk.putDouble(base + yOffset, y);
+        chunk.putDouble(base + x1Offset, nx1);
+        chunk.putDouble(base + y1Offset, ny1);
+        chunk.putDouble(base + x2Offset, nx2);
+        chunk.putDouble(base + y2Offset, ny2);
+        for (int quadrant = 0; quadrant < 4; quadrant += 1)
+        {
+            chunk.putInt(base + childOffset + 4 * quadrant, -1);
+        }
+        chunk.putLong(base + idOffset, id);
+
+        size += 1;
+        return node;
+    }
+
+    /**
+     * Returns a new buffer of native memory with room for the number of nodes.
+     */
+    private static ByteBuffer allocate(int nodes)
+    {
+        return ByteBuffer.allocateDirect(nodes * nodeBytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Pushes the node's children onto the stack in reverse (4-1), so they are popped in order (1-4), returning the new top.
+     */
+    private static int pushChildren(ByteBuffer chunk, int base, int[] stack, int top)
+    {
+        for (int quadrant = 3; quadrant >= 0; quadrant -= 1)
+        {
+            int child = chunk.getInt(base + childOffset + 4 * quadrant);
+            if (child >= 0) stack[top++] = child;
+        }
+        return top;
+    }
+
+    /**
+     * A growable array of ids, so the queries do not box each id into a Long.
+     */
+    private static class IdList implements LongConsumer
+    {
+        private long[] ids = new long[16];
+        private int count;
+
+        public void accept(long id)
+        {
+            if (count == ids.length) ids = Arrays.copyOf(ids, count * 2);
+            ids[count] = id;
+            count += 1;
+        }
+
+        public long[] toArray()
+        {
+            return Arrays.copyOf(ids, count);
+        }
+    }
+}
@@ -0,0 +1,955 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A Bucketed PR (Point-Region) Quadtree
+ * Splits each region at its midpoint into four quadrants, and stores up to a fixed number of points (the capacity)
+ * in each leaf, in primitive arrays which are scanned sequentially.
+ *
+ * Unlike PointQuadtree, the points do not choose the splits, so there are about n / capacity nodes rather than n,
+ * and the shape of the tree does not depend on the order in which the points arrive.
+ *
+ * Path Compression: Points clustered closely together would otherwise form long chains of nodes, each with one child
+ * holding all the points and three empty leaves. Instead, a child may be compressed: several levels down from its
+ * parent, with the region of the smallest cell holding its points (where they divide between at least two quadrants).
+ * When a point arrives in the parent's quadrant but outside that region, a node is put back at the smallest cell
+ * holding both. Queries are unchanged, since every region still holds the points beneath it.
+ *
+ * CircleQuadtree extends this class, keeping a radius alongside each point in its leaves and the largest radius at
+ * each node: the protected methods below are where the two differ (how the leaves' arrays are kept, and how far a
+ * query circle must reach to find each point or region). Everything else, from splitting to the queries, is shared.
+ *
+ * @author Carter Kruse & John Deforest, Dartmouth CS 10, Spring 2022
+ */
+public class PRQuadtree<E extends Point2D> implements SpatialIndex<E>
+{
+    private static final int defaultCapacity = 8; // Points per leaf, unless otherwise specified.
+    private static final int maxDepth = 32; // Leaves this deep grow instead of splitting (for many points very close together).
+
+    private final double x1, y1; // Upper-left corner of the region.
+    private final double x2, y2; // Bottom-right corner of the region.
+    private final int capacity; // How many points a leaf holds before splitting.
+    private final int depth; // How many times the root's region is halved to give this node's region.
+    private final boolean distinct; // Whether a point at the same location as another replaces it (otherwise both are kept).
+
+    private PRQuadtree<E> c1, c2, c3, c4; // Children (all null for a leaf).
+
+    protected int count; // How many points the leaf holds.
+    protected double[] xs, ys; // Coordinates of the points in the leaf (allocated on first use).
+    protected Object[] items; // The points in the leaf (allocated on first use).
+
+
+    /**
+     * Constructor
+     *
+     * Initializes an empty quadtree over the rectangle, with the default capacity per leaf.
+     */
+    public PRQuadtree(double x1, double y1, double x2, double y2)
+    {
+        this(x1, y1, x2, y2, defaultCapacity);
+    }
+
+    /**
+     * Constructor
+     *
+     * Initializes an empty quadtree over the rectangle.
+     *
+     * @param capacity How many points a leaf holds before splitting.
+     */
+    public PRQuadtree(double x1, double y1, double x2, double y2, int capacity)
+    {
+        this(x1, y1, x2, y2, capacity, 0, true);
+    }
+
+    /**
+     * Constructor
+     *
+     * Initializes an empty node over the rectangle, for this class or a subclass.
+     *
+     * @param depth How many times the root's region is halved to give this node's region (0 for the root).
+     * @param distinct Whether a point at the same location as another replaces it (otherwise both are kept).
+     */
+    protected PRQuadtree(double x1, double y1, double x2, double y2, int capacity, int depth, boolean distinct)
+    {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+        this.capacity = capacity;
+        this.depth = depth;
+        this.distinct = distinct;
+    }
+
+    // Getters
+    public double getX1()
+    {
+        return x1;
+    }
+
+    public double getY1()
+    {
+        return y1;
+    }
+
+    public double getX2()
+    {
+        return x2;
+    }
+
+    public double getY2()
+    {
+        return y2;
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Returns whether this node is a leaf (holding points rather than children).
+     */
+    public boolean isLeaf()
+    {
+        return c1 == null;
+    }
+
+    /**
+     * Returns the child (if any) at the given quadrant, 1-4.
+     * A compressed child's region is smaller than the quadrant, but holds all the points in it.
+     */
+    public PRQuadtree<E> getChild(int quadrant)
+    {
+        if (quadrant == 1) return c1;
+        if (quadrant == 2) return c2;
+        if (quadrant == 3) return c3;
+        if (quadrant == 4) return c4;
+        return null;
+    }
+
+    /**
+     * Inserts the point into the tree.
+     *
+     * Edge Cases: Points on a midpoint line go to the quadrant to the right of (or below) it.
+     * A point at the same location as one already in the tree replaces it (as in PointQuadtree), unless the tree
+     * keeps both (as CircleQuadtree does).
+     */
+    public void insert(E point)
+    {
+        double px = point.getX(), py = point.getY();
+
+        // Descending to the leaf whose region holds the location, remembering its parent.
+        PRQuadtree<E> parent = null, node = this;
+        int quadrant = 0; // The quadrant taken from the parent.
+        node.include(point);
+        while (!node.isLeaf())
+        {
+            quadrant = node.quadrant(px, py);
+            PRQuadtree<E> child = node.getChild(quadrant);
+
+            // Making room for a location outside a compressed child's region.
+            if (!node.covers(quadrant, child, px, py)) child = node.expand(quadrant, px, py);
+            parent = node;
+            node = child;
+            node.include(point);
+        }
+
+        // Replacing the point at the same location, if there is one.
+        for (int i = 0; distinct && i < node.count; i += 1)
+        {
+            if (node.xs[i] == px && node.ys[i] == py)
+            {
+                node.set(i, point, px, py);
+                return;
+            }
+        }
+
+        // Compressing a full leaf (other than the root) into the smallest cell which divides its points and the location.
+        if (node.count == node.capacity && parent != null)
+        {
+            PRQuadtree<E> smaller = node.shrink(px, py, node.xs, node.ys, node.count);
+            if (smaller != node)
+            {
+                for (int i = 0; i < node.count; i += 1)
+                {
+                    smaller.addFrom(node, i);
+                }
+                smaller.include(point);
+
+                parent.setChild(quadrant, smaller);
+                node = smaller;
+            }
+        }
+
+        // Splitting a full leaf, then descending into the new children (which may themselves be full).
+        while (node.count == node.capacity && node.depth < maxDepth)
+        {
+            node.split(px, py);
+            node = node.getChild(node.quadrant(px, py));
+            node.include(point);
+        }
+
+        node.add(point, px, py);
+    }
+
+    /**
+     * Removes the point from the tree.
+     * When the four leaves under a node hold no more than the capacity between them, they are merged back into the node;
+     * a node left with a single child which is not an empty leaf is compressed out of the tree.
+     *
+     * @param point The point, at the location where it was inserted (or last updated).
+     *
+     * @return Whether the point was found in the tree.
+     */
+    public boolean remove(E point)
+    {
+        double px = point.getX(), py = point.getY();
+
+        // Descending to the leaf whose region holds the location, remembering its parent and grandparent.
+        PRQuadtree<E> grandparent = null, parent = null, node = this;
+        int slot = 0, quadrant = 0; // The quadrants taken from the grandparent and from the parent.
+        while (!node.isLeaf())
+        {
+            grandparent = parent;
+            slot = quadrant;
+            parent = node;
+            quadrant = node.quadrant(px, py);
+            node = node.getChild(quadrant);
+
+            // The location is outside a compressed child's region, so no point there is in the tree.
+            if (!parent.covers(quadrant, node, px, py)) return false;
+        }
+
+        int i = node.indexOf(point);
+        if (i < 0) return false;
+
+        node.removeAt(i);
+        if (parent != null) parent.merge();
+        if (grandparent != null) grandparent.compress(slot);
+        return true;
+    }
+
+    /**
+     * Updates the tree after the point has moved from (oldX, oldY) to its current location.
+     * While the point stays in the same leaf, only its coordinates in the leaf are updated.
+     *
+     * Edge Cases: As in PointQuadtree.update, if another point is already at the new location, the moved point is
+     * removed from the tree instead (the other point is kept), and false is returned; unless the tree keeps both.
+     *
+     * @param point The point, already at its new location.
+     * @param oldX The x-coordinate of the point when it was inserted (or last updated).
+     * @param oldY The y-coordinate of the point when it was inserted (or last updated).
+     *
+     * @return Whether the point was found in the tree (at its old location), and is still held at its new location.
+     */
+    public boolean update(E point, double oldX, double oldY)
+    {
+        double px = point.getX(), py = point.getY();
+
+        PRQuadtree<E> grandparent = null, parent = null, oldLeaf = this, newLeaf = this;
+        int slot = 0, quadrant = 0; // The quadrants taken from the grandparent and from the parent.
+        while (!oldLeaf.isLeaf())
+        {
+            grandparent = parent;
+            slot = quadrant;
+            parent = oldLeaf;
+            quadrant = oldLeaf.quadrant(oldX, oldY);
+            oldLeaf = oldLeaf.getChild(quadrant);
+
+            if (!parent.covers(quadrant, oldLeaf, oldX, oldY)) return false;
+        }
+
+        int i = oldLeaf.indexOf(point);
+        if (i < 0) return false;
+
+        newLeaf.include(point);
+        while (newLeaf != null && !newLeaf.isLeaf())
+        {
+            int newQuadrant = newLeaf.quadrant(px, py);
+            PRQuadtree<E> child = newLeaf.getChild(newQuadrant);
+
+            // Outside a compressed child's region, the point cannot stay in its leaf.
+            newLeaf = newLeaf.covers(newQuadrant, child, px, py) ? child : null;
+            if (newLeaf != null) newLeaf.include(point);
+        }
+
+        // Leaving the point out, rather than replacing another point at its new location.
+        if (distinct && newLeaf != null && newLeaf.holdsOther(px, py, point))
+        {
+            oldLeaf.removeAt(i);
+            if (parent != null) parent.merge();
+            if (grandparent != null) grandparent.compress(slot);
+            return false;
+        }
+
+        // Staying in the same leaf: only updating the point's coordinates.
+        if (oldLeaf == newLeaf)
+        {
+            oldLeaf.set(i, point, px, py);
+            return true;
+        }
+
+        // Otherwise, moving the point into its new leaf.
+        oldLeaf.removeAt(i);
+        if (parent != null) parent.merge();
+        if (grandparent != null) grandparent.compress(slot);
+        insert(point);
+        return true;
+    }
+
+    /**
+     * Finds the number of points in the quadtree (including its descendants).
+     */
+    public int size()
+    {
+        int size = 0;
+
+        PRQuadtree<E>[] stack = newStack();
+        int top = 0;
+        stack[top++] = this;
+
+        while (top > 0)
+        {
+            PRQuadtree<E> node = stack[--top];
+
+            if (node.isLeaf())
+            {
+                size += node.count;
+            }
+
+            else
+            {
+                if (top + 4 > stack.length) stack = grow(stack);
+                stack[top++] = node.c4;
+                stack[top++] = node.c3;
+                stack[top++] = node.c2;
+                stack[top++] = node.c1;
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Builds a list of all the points in the quadtree (including its descendants).
+     *
+     * @return The points in the quadtree.
+     */
+    @SuppressWarnings("unchecked")
+    public List<E> allPoints()
+    {
+        List<E> pointsList = new ArrayList<>();
+
+        PRQuadtree<E>[] stack = newStack();
+        int top = 0;
+        stack[top++] = this;
+
+        while (top > 0)
+        {
+            PRQuadtree<E> node = stack[--top];
+
+            if (node.isLeaf())
+            {
+                for (int i = 0; i < node.count; i += 1)
+                {
+                    pointsList.add((E) node.items[i]);
+                }
+            }
+
+            else
+            {
+                if (top + 4 > stack.length) stack = grow(stack);
+                stack[top++] = node.c4;
+                stack[top++] = node.c3;
+                stack[top++] = node.c2;
+                stack[top++] = node.c1;
+            }
+        }
+
+        return pointsList;
+    }
+
+    /**
+     * Uses the quadtree to find all points within the circle.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     *
+     * @return The points in the circle.
+     */
+    public List<E> findInCircle(double cx, double cy, double cr)
+    {
+        List<E> pointsInCircle = new ArrayList<>();
+        forEachInCircle(cx, cy, cr, pointsInCircle::add);
+        return pointsInCircle;
+    }
+
+    /**
+     * Passes each point within the circle to the action, without building a list.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     * @param action What to do with each point in the circle.
+     */
+    public void forEachInCircle(double cx, double cy, double cr, Consumer<? super E> action)
+    {
+        search(cx, cy, cr, false, null, point ->
+        {
+            action.accept(point);
+            return true;
+        });
+    }
+
+    /**
+     * Returns whether there is a point other than self within the circle, stopping at the first one found.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     * @param self The point to ignore (compared by identity), such as the point at the center of the circle.
+     */
+    public boolean anyInCircleExcept(double cx, double cy, double cr, E self)
+    {
+        return search(cx, cy, cr, false, self, point -> false);
+    }
+
+    /**
+     * Passes each point within the circle (other than self, compared by identity) to the action, in order, until the
+     * action returns false.
+     *
+     * When widened, each point is found within cr plus its extent of the circle's center, and a region is skipped only
+     * when it is farther than cr plus its reach (see extent and reach): this is how CircleQuadtree finds the circles
+     * overlapping the query circle. Otherwise the extents are ignored, and the points themselves must be in the circle.
+     *
+     * @return Whether the action stopped the search (by returning false).
+     */
+    @SuppressWarnings("unchecked")
+    protected boolean search(double cx, double cy, double cr, boolean widened, E self, Predicate<? super E> action)
+    {
+        PRQuadtree<E>[] stack = newStack();
+        int top = 0;
+        stack[top++] = this;
+
+        while (top > 0)
+        {
+            PRQuadtree<E> node = stack[--top];
+
+            // Using the Geometry helper method to determine if the circle intersects a given quadrant.
+            double reach = widened ? node.reach() : 0;
+            if (!Geometry.circleIntersectsRectangle(cx, cy, cr + reach, node.x1, node.y1, node.x2, node.y2)) continue;
+
+            // Scanning the points of a leaf in order.
+            if (node.isLeaf())
+            {
+                for (int i = 0; i < node.count; i += 1)
+                {
+                    double extent = widened ? node.extent(i) : 0;
+                    if (node.items[i] != self && Geometry.pointInCircle(node.xs[i], node.ys[i], cx, cy, cr + extent))
+                    {
+                        if (!action.test((E) node.items[i])) return true;
+                    }
+                }
+            }
+
+            else
+            {
+                if (top + 4 > stack.length) stack = grow(stack);
+                stack[top++] = node.c4;
+                stack[top++] = node.c3;
+                stack[top++] = node.c2;
+                stack[top++] = node.c1;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Uses the quadtree to find all points within the rectangle.
+     *
+     * @param rx1 Top left x coordinate of rectangle.
+     * @param ry1 Top left y coordinate of rectangle.
+     * @param rx2 Bottom right x coordinate of rectangle.
+     * @param ry2 Bottom right y coordinate of rectangle.
+     *
+     * @return The points in the rectangle.
+     */
+    @SuppressWarnings("unchecked")
+    public List<E> findInRectangle(double rx1, double ry1, double rx2, double ry2)
+    {
+        List<E> pointsInRectangle = new ArrayList<>();
+
+        PRQuadtree<E>[] stack = newStack();
+        int top = 0;
+        stack[top++] = this;
+
+        while (top > 0)
+        {
+            PRQuadtree<E> node = stack[--top];
+
+            // Skipping regions which do not overlap the rectangle (points on its edges are not within it).
+            if (!GeometryExtra.rectangleIntersectsRectangle(node.x1, node.y1, node.x2, node.y2, rx1, ry1, rx2, ry2)) continue;
+
+            // Scanning the points of a leaf in order.
+            if (node.isLeaf())
+            {
+                for (int i = 0; i < node.count; i += 1)
+                {
+                    if (GeometryExtra.pointInRectangle(node.xs[i], node.ys[i], rx1, ry1, rx2, ry2)) pointsInRectangle.add((E) node.items[i]);
+                }
+            }
+
+            else
+            {
+                if (top + 4 > stack.length) stack = grow(stack);
+                stack[top++] = node.c4;
+                stack[top++] = node.c3;
+                stack[top++] = node.c2;
+                stack[top++] = node.c1;
+            }
+        }
+
+        return pointsInRectangle;
+    }
+
+    /**
+     * Finds the k points nearest to the location, with a best-first search over the regions
+     * (closest region first, as measured by Geometry.rectangleDistanceSquared).
+     *
+     * @param x Location x.
+     * @param y Location y.
+     * @param k How many points to find.
+     *
+     * @return The nearest points (fewer if the quadtree holds fewer than k), from nearest to farthest.
+     */
+    @SuppressWarnings("unchecked")
+    public List<E> nearest(double x, double y, int k)
+    {
+        List<E> nearestPoints = new ArrayList<>();
+        if (k <= 0) return nearestPoints;
+
+        // The regions still to visit, closest first; and the best points so far, farthest first (at most k).
+        PriorityQueue<Candidate<PRQuadtree<E>>> nodes = new PriorityQueue<>((a, b) -> Double.compare(a.distance, b.distance));
+        PriorityQueue<Candidate<E>> best = new PriorityQueue<>((a, b) -> Double.compare(b.distance, a.distance));
+
+        nodes.add(new Candidate<>(this, Geometry.rectangleDistanceSquared(x, y, x1, y1, x2, y2)));
+
+        while (!nodes.isEmpty())
+        {
+            Candidate<PRQuadtree<E>> closest = nodes.poll();
+
+            // No remaining region can hold a point nearer than the k-th best so far.
+            if (best.size() == k && closest.distance > best.peek().distance) break;
+
+            PRQuadtree<E> node = closest.item;
+
+            if (node.isLeaf())
+            {
+                for (int i = 0; i < node.count; i += 1)
+                {
+                    double dx = node.xs[i] - x, dy = node.ys[i] - y;
+                    double distance = dx * dx + dy * dy;
+
+                    if (best.size() < k)
+                    {
+                        best.add(new Candidate<>((E) node.items[i], distance));
+                    }
+
+                    else if (distance < best.peek().distance)
+                    {
+                        best.poll();
+                        best.add(new Candidate<>((E) node.items[i], distance));
+                    }
+                }
+            }
+
+            else
+            {
+                for (int quadrant = 1; quadrant <= 4; quadrant += 1)
+                {
+                    PRQuadtree<E> child = node.getChild(quadrant);
+
+                    double bound = Geometry.rectangleDistanceSquared(x, y, child.x1, child.y1, child.x2, child.y2);
+                    if (best.size() < k || bound <= best.peek().distance)
+                    {
+                        nodes.add(new Candidate<>(child, bound));
+                    }
+                }
+            }
+        }
+
+        // Emptying the best points farthest first, so they are listed nearest first.
+        while (!best.isEmpty())
+        {
+            nearestPoints.add(best.poll().item);
+        }
+        Collections.reverse(nearestPoints);
+
+        return nearestPoints;
+    }
+
+    // Helper Methods
+
+    /**
+     * Returns the quadrant (1-4) of this node's region in which the location belongs.
+     */
+    private int quadrant(double px, double py)
+    {
+        return quadrant(px, py, (x1 + x2) / 2, (y1 + y2) / 2);
+    }
+
+    /**
+     * Returns the quadrant (1-4) of a region split at (mx, my) in which the location belongs.
+     */
+    private static int quadrant(double px, double py, double mx, double my)
+    {
+        if (px >= mx && py < my) return 1;
+        if (px < mx && py < my) return 2;
+        if (px < mx) return 3;
+        return 4;
+    }
+
+    /**
+     * Returns the quadrant of a region split at (mx, my) in which the location and all the points belong, or 0 if
+     * they do not all belong in the same one.
+     */
+    private static int commonQuadrant(double mx, double my, double px, double py, double[] xs, double[] ys, int count)
+    {
+        int quadrant = quadrant(px, py, mx, my);
+
+        for (int i = 0; i < count; i += 1)
+        {
+            if (quadrant(xs[i], ys[i], mx, my) != quadrant) return 0;
+        }
+
+        return quadrant;
+    }
+
+    /**
+     * Returns whether the location, which belongs in the quadrant, is within the region of the child there.
+     * This is always so, unless the child is compressed (with a smaller region than the quadrant).
+     */
+    private boolean covers(int quadrant, PRQuadtree<E> child, double px, double py)
+    {
+        if (child.depth == depth + 1) return true;
+
+        double mx = (x1 + x2) / 2, my = (y1 + y2) / 2;
+        double sx1 = (quadrant == 1 || quadrant == 4) ? mx : x1, sx2 = (quadrant == 1 || quadrant == 4) ? x2 : mx;
+        double sy1 = (quadrant <= 2) ? y1 : my, sy2 = (quadrant <= 2) ? my : y2;
+
+        // Locations beyond the edges of the quadrant (outside the root's region) belong to the cells along those edges.
+        return (px >= child.x1 || child.x1 == sx1) && (px < child.x2 || child.x2 == sx2)
+            && (py >= child.y1 || child.y1 == sy1) && (py < child.y2 || child.y2 == sy2);
+    }
+
+    /**
+     * Returns a new empty leaf with the region of the quadrant (1-4) of this node's region.
+     */
+    private PRQuadtree<E> cell(int quadrant)
+    {
+        double mx = (x1 + x2) / 2, my = (y1 + y2) / 2;
+
+        if (quadrant == 1) return newNode(mx, y1, x2, my, depth + 1);
+        if (quadrant == 2) return newNode(x1, y1, mx, my, depth + 1);
+        if (quadrant == 3) return newNode(x1, my, mx, y2, depth + 1);
+        return newNode(mx, my, x2, y2, depth + 1);
+    }
+
+    /**
+     * Returns a new empty leaf with the region of the smallest cell within this node's region which holds the location
+     * and the points without them all belonging in one of its quadrants (or no deeper than maxDepth), or this node if
+     * that is its own region.
+     */
+    private PRQuadtree<E> shrink(double px, double py, double[] xs, double[] ys, int count)
+    {
+        double cx1 = x1, cy1 = y1, cx2 = x2, cy2 = y2;
+        int d = depth;
+
+        // Halving the cell towards the quadrant they all belong in, while there is one.
+        while (d < maxDepth)
+        {
+            double mx = (cx1 + cx2) / 2, my = (cy1 + cy2) / 2;
+
+            int quadrant = commonQuadrant(mx, my, px, py, xs, ys, count);
+            if (quadrant == 0) break;
+
+            if (quadrant == 1 || quadrant == 4) cx1 = mx;
+            else cx2 = mx;
+
+            if (quadrant <= 2) cy2 = my;
+            else cy1 = my;
+
+            d += 1;
+        }
+
+        if (d == depth) return this;
+        return newNode(cx1, cy1, cx2, cy2, d);
+    }
+
+    /**
+     * Replaces the compressed child at the quadrant, whose region does not hold the location, with a new node at the
+     * smallest cell holding both. The new node's children are the old child and empty leaves.
+     *
+     * @return The new node.
+     */
+    private PRQuadtree<E> expand(int quadrant, double px, double py)
+    {
+        PRQuadtree<E> child = getChild(quadrant);
+        double cx = (child.x1 + child.x2) / 2, cy = (child.y1 + child.y2) / 2;
+
+        // The child's center belongs in the same cells as the child, down to its own region.
+        PRQuadtree<E> node = cell(quadrant).shrink(px, py, new double[] {cx}, new double[] {cy}, 1);
+
+        node.c1 = node.cell(1);
+        node.c2 = node.cell(2);
+        node.c3 = node.cell(3);
+        node.c4 = node.cell(4);
+        node.setChild(node.quadrant(cx, cy), child);
+        node.include(child);
+
+        setChild(quadrant, node);
+        return node;
+    }
+
+    /**
+     * Compresses the child at the quadrant out of the tree, if it has a single child which is not an empty leaf
+     * (a chain left behind by removals): that grandchild takes its place.
+     */
+    private void compress(int quadrant)
+    {
+        PRQuadtree<E> child = getChild(quadrant);
+        if (child.isLeaf()) return;
+
+        PRQuadtree<E> only = null;
+        for (int q = 1; q <= 4; q += 1)
+        {
+            PRQuadtree<E> grandchild = child.getChild(q);
+            if (grandchild.isLeaf() && grandchild.count == 0) continue;
+
+            if (only != null) return;
+            only = grandchild;
+        }
+
+        if (only != null) setChild(quadrant, only);
+    }
+
+    /**
+     * Sets the child at the quadrant, 1-4.
+     */
+    private void setChild(int quadrant, PRQuadtree<E> child)
+    {
+        if (quadrant == 1) c1 = child;
+        else if (quadrant == 2) c2 = child;
+        else if (quadrant == 3) c3 = child;
+        else c4 = child;
+    }
+
+    /**
+     * Splits a leaf into four children at the midpoint of its region, moving its points down into them.
+     * If the points and the location (of the point being inserted) all belong in one quadrant, the child there is
+     * compressed: it is created at the smallest cell which divides them, rather than at each level in between.
+     */
+    private void split(double px, double py)
+    {
+        double mx = (x1 + x2) / 2, my = (y1 + y2) / 2;
+
+        c1 = cell(1);
+        c2 = cell(2);
+        c3 = cell(3);
+        c4 = cell(4);
+
+        int quadrant = commonQuadrant(mx, my, px, py, xs, ys, count);
+        if (quadrant != 0) setChild(quadrant, getChild(quadrant).shrink(px, py, xs, ys, count));
+
+        for (int i = 0; i < count; i += 1)
+        {
+            getChild(quadrant(xs[i], ys[i])).addFrom(this, i);
+        }
+
+        // The node no longer holds points itself.
+        clear();
+    }
+
+    /**
+     * Merges the four children of a node back into it, if they are all leaves holding no more than the capacity.
+     */
+    private void merge()
+    {
+        if (!c1.isLeaf() || !c2.isLeaf() || !c3.isLeaf() || !c4.isLeaf()) return;
+        if (c1.count + c2.count + c3.count + c4.count > capacity) return;
+
+        for (int quadrant = 1; quadrant <= 4; quadrant += 1)
+        {
+            PRQuadtree<E> child = getChild(quadrant);
+            for (int i = 0; i < child.count; i += 1)
+            {
+                addFrom(child, i);
+            }
+        }
+
+        c1 = c2 = c3 = c4 = null;
+    }
+
+    /**
+     * Returns the index of the point (compared by identity) in a leaf, or -1 if it is not there.
+     */
+    private int indexOf(E point)
+    {
+        for (int i = 0; i < count; i += 1)
+        {
+            if (items[i] == point) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns whether a leaf holds a point other than the given one at the location.
+     */
+    private boolean holdsOther(double px, double py, E point)
+    {
+        for (int i = 0; i < count; i += 1)
+        {
+            if (xs[i] == px && ys[i] == py && items[i] != point) return true;
+        }
+        return false;
+    }
+
+    // Extension Points (see CircleQuadtree)
+
+    /**
+     * Returns a new empty node (of the same class as this one) over the rectangle, at the depth.
+     */
+    protected PRQuadtree<E> newNode(double x1, double y1, double x2, double y2, int depth)
+    {
+        return new PRQuadtree<>(x1, y1, x2, y2, capacity, depth, distinct);
+    }
+
+    /**
+     * Notes that the point is about to be added to this node's subtree. Nothing here; CircleQuadtree widens the node's
+     * largest radius.
+     */
+    protected void include(E point)
+    {
+    }
+
+    /**
+     * Notes that the child's subtree has been placed beneath this node (when a compressed child is expanded).
+     * Nothing here; CircleQuadtree widens the node's largest radius to the child's.
+     */
+    protected void include(PRQuadtree<E> child)
+    {
+    }
+
+    /**
+     * Returns how far beyond its location the point at the index of a leaf reaches, for a widened search:
+     * 0 here, and the radius of the circle in CircleQuadtree.
+     */
+    protected double extent(int i)
+    {
+        return 0;
+    }
+
+    /**
+     * Returns how far beyond this node's region the points in its subtree reach (at least the largest of their
+     * extents), for a widened search: 0 here, and the largest radius in CircleQuadtree.
+     */
+    protected double reach()
+    {
+        return 0;
+    }
+
+    /**
+     * Adds the point at the index of another leaf to this leaf, keeping whatever else the leaf holds for it.
+     */
+    @SuppressWarnings("unchecked")
+    protected void addFrom(PRQuadtree<E> leaf, int i)
+    {
+        add((E) leaf.items[i], leaf.xs[i], leaf.ys[i]);
+    }
+
+    /**
+     * Replaces the point at the index of a leaf with the point at the location (the same point after it moved, or a
+     * point at the same location).
+     */
+    protected void set(int i, E point, double px, double py)
+    {
+        xs[i] = px;
+        ys[i] = py;
+        items[i] = point;
+    }
+
+    /**
+     * Empties a leaf which has been split, releasing its arrays.
+     */
+    protected void clear()
+    {
+        count = 0;
+        xs = ys = null;
+        items = null;
+    }
+
+    /**
+     * Removes the point at the index from a leaf, moving the leaf's last point into its place.
+     */
+    protected void removeAt(int i)
+    {
+        count -= 1;
+        xs[i] = xs[count];
+        ys[i] = ys[count];
+        items[i] = items[count];
+        items[count] = null;
+    }
+
+    /**
+     * Adds the point to a leaf, allocating its arrays on first use, or growing them if it is already full (only when
+     * it is too deep to split).
+     */
+    protected void add(E point, double px, double py)
+    {
+        if (xs == null)
+        {
+            xs = new double[capacity];
+            ys = new double[capacity];
+            items = new Object[capacity];
+        }
+
+        else if (count == xs.length)
+        {
+            xs = Arrays.copyOf(xs, count * 2);
+            ys = Arrays.copyOf(ys, count * 2);
+            items = Arrays.copyOf(items, count * 2);
+        }
+
+        xs[count] = px;
+        ys[count] = py;
+        items[count] = point;
+        count += 1;
+    }
+
+    /**
+     * Returns a new stack for a traversal. Each traversal has a stack of its own, so a query may be run from inside
+     * another query's action, or from several threads at once.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <E extends Point2D> PRQuadtree<E>[] newStack()
+    {
+        return (PRQuadtree<E>[]) new PRQuadtree[64];
+    }
+
+    /**
+     * Returns a copy of the stack with double the capacity, keeping its contents.
+     */
+    private static <E extends Point2D> PRQuadtree<E>[] grow(PRQuadtree<E>[] stack)
+    {
+        return Arrays.copyOf(stack, stack.length * 2);
+    }
+}
@@ -0,0 +1,519 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A Persistent (Immutable) Point Quadtree
+ * Each version of the quadtree is immutable: insert, remove and update return a new version, and leave this one as it was.
+ * The new version copies only the nodes on the path to the change (path copying), and shares all the other subtrees
+ * with the old one, so a change costs about as much as in PointQuadtree.
+ *
+ * This lets one thread (the writer) keep producing new versions while other threads (readers) query the version they
+ * last took, with no locks: the writer publishes each version through a volatile field (or an AtomicReference), and a
+ * reader takes a snapshot by reading that field once. Every field of a version and of its nodes is final, and the
+ * queries use a fresh stack each time, so a snapshot can be queried from any number of threads at once.
+ *
+ * Each node records the location of its point when it was inserted, and the queries test those locations, so moving
+ * a point does not disturb the versions holding it; the writer moves it with update, which only changes the new version.
+ * The splits and edge cases are those of PointQuadtree (a point inserted at the same location as another replaces it,
+ * while a point moved onto another is left out).
+ *
+ * @author Carter Kruse & John Deforest, Dartmouth CS 10, Spring 2022
+ */
+public final class PersistentQuadtree<E extends Point2D>
+{
+    private final double x1, y1; // Upper-left corner of the region.
+    private final double x2, y2; // Bottom-right corner of the region.
+    private final Node<E> root; // The root node (null for an empty quadtree).
+
+    /**
+     * Constructor
+     *
+     * Initializes an empty quadtree over the rectangle. The first point inserted anchors it.
+     */
+    public PersistentQuadtree(double x1, double y1, double x2, double y2)
+    {
+        this(x1, y1, x2, y2, null);
+    }
+
+    private PersistentQuadtree(double x1, double y1, double x2, double y2, Node<E> root)
+    {
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+        this.root = root;
+    }
+
+    // Getters
+    public double getX1()
+    {
+        return x1;
+    }
+
+    public double getY1()
+    {
+        return y1;
+    }
+
+    public double getX2()
+    {
+        return x2;
+    }
+
+    public double getY2()
+    {
+        return y2;
+    }
+
+    /**
+     * Finds the number of points in this version.
+     */
+    public int size()
+    {
+        return root == null ? 0 : root.count;
+    }
+
+    /**
+     * Returns a new version with the point inserted (at its current location). This version is unchanged.
+     *
+     * Edge Cases: As in PointQuadtree, a point at the same x- or y-coordinate as a parent goes to the quadrant with the
+     * lowest number (1-4), and a point at the same location as another replaces it.
+     */
+    public PersistentQuadtree<E> insert(E point)
+    {
+        return new PersistentQuadtree<>(x1, y1, x2, y2, insert(root, point, point.getX(), point.getY()));
+    }
+
+    /**
+     * Returns a new version without the point, or this version if the point is not in it.
+     *
+     * As in PointQuadtree, the subtree below the point's node is rebuilt (balanced) from its other points;
+     * the rest of the new version is shared with this one.
+     *
+     * @param point The point, at the location where it was inserted (or last updated).
+     */
+    public PersistentQuadtree<E> remove(E point)
+    {
+        return remove(point, point.getX(), point.getY());
+    }
+
+    /**
+     * Returns a new version with the point moved from (oldX, oldY) to its current location,
+     * or this version if the point is not in it (at its old location).
+     *
+     * Edge Cases: As in PointQuadtree.update, if another point is already at the new location, the new version leaves the
+     * moved point out (the other point is kept), so it holds one point fewer.
+     *
+     * @param point The point, already at its new location.
+     * @param oldX The x-coordinate of the point when it was inserted (or last updated).
+     * @param oldY The y-coordinate of the point when it was inserted (or last updated).
+     */
+    public PersistentQuadtree<E> update(E point, double oldX, double oldY)
+    {
+        PersistentQuadtree<E> removed = remove(point, oldX, oldY);
+        if (removed == this) return this;
+
+        // Leaving the point out, rather than replacing another point at its new location.
+        if (occupied(removed.root, point.getX(), point.getY())) return removed;
+
+        return new PersistentQuadtree<>(x1, y1, x2, y2, insert(removed.root, point, point.getX(), point.getY()));
+    }
+
+    /**
+     * Builds a list of all the points in this version, in pre-order (each node, then its children in order 1-4).
+     */
+    public List<E> allPoints()
+    {
+        List<E> pointsList = new ArrayList<>();
+        if (root == null) return pointsList;
+
+        Node<E>[] stack = newStack();
+        int top = 0;
+        stack[top++] = root;
+
+        while (top > 0)
+        {
+            Node<E> node = stack[--top];
+            pointsList.add(node.point);
+
+            if (top + 4 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+            top = node.pushChildren(stack, top);
+        }
+
+        return pointsList;
+    }
+
+    /**
+     * Finds all points within the circle.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     *
+     * @return The points in the circle.
+     */
+    public List<E> findInCircle(double cx, double cy, double cr)
+    {
+        List<E> pointsInCircle = new ArrayList<>();
+        forEachInCircle(cx, cy, cr, pointsInCircle::add);
+        return pointsInCircle;
+    }
+
+    /**
+     * Passes each point within the circle to the action, without building a list.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     * @param action What to do with each point in the circle.
+     */
+    public void forEachInCircle(double cx, double cy, double cr, Consumer<? super E> action)
+    {
+        if (root == null) return;
+
+        // A fresh stack for each query, so a version can be queried from several threads at once.
+        Node<E>[] stack = newStack();
+        int top = 0;
+        stack[top++] = root;
+
+        while (top > 0)
+        {
+            Node<E> node = stack[--top];
+
+            // Using the Geometry helper method to determine if the circle intersects the node's region.
+            if (Geometry.circleIntersectsRectangle(cx, cy, cr, node.x1, node.y1, node.x2, node.y2))
+            {
+                if (Geometry.pointInCircle(node.px, node.py, cx, cy, cr)) action.accept(node.point);
+
+                // Pushing the children in reverse, so they are visited in order (1-4).
+                if (top + 4 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                top = node.pushChildren(stack, top);
+            }
+        }
+    }
+
+    /**
+     * Returns whether there is a point other than self within the circle, stopping at the first one found.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     * @param self The point to ignore (compared by identity), such as the point at the center of the circle.
+     */
+    public boolean anyInCircleExcept(double cx, double cy, double cr, E self)
+    {
+        if (root == null) return false;
+
+        Node<E>[] stack = newStack();
+        int top = 0;
+        stack[top++] = root;
+
+        while (top > 0)
+        {
+            Node<E> node = stack[--top];
+
+            if (Geometry.circleIntersectsRectangle(cx, cy, cr, node.x1, node.y1, node.x2, node.y2))
+            {
+                if (node.point != self && Geometry.pointInCircle(node.px, node.py, cx, cy, cr)) return true;
+
+                if (top + 4 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                top = node.pushChildren(stack, top);
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Finds all points within the rectangle (not on its edges, as in GeometryExtra.pointInRectangle).
+     *
+     * @param rx1 Top left x coordinate of rectangle.
+     * @param ry1 Top left y coordinate of rectangle.
+     * @param rx2 Bottom right x coordinate of rectangle.
+     * @param ry2 Bottom right y coordinate of rectangle.
+     *
+     * @return The points in the rectangle.
+     */
+    public List<E> findInRectangle(double rx1, double ry1, double rx2, double ry2)
+    {
+        List<E> pointsInRectangle = new ArrayList<>();
+        if (root == null) return pointsInRectangle;
+
+        Node<E>[] stack = newStack();
+        int top = 0;
+        stack[top++] = root;
+
+        while (top > 0)
+        {
+            Node<E> node = stack[--top];
+
+            // Skipping regions which do not overlap the rectangle (points on its edges are not within it).
+            if (!GeometryExtra.rectangleIntersectsRectangle(node.x1, node.y1, node.x2, node.y2, rx1, ry1, rx2, ry2)) continue;
+
+            if (GeometryExtra.pointInRectangle(node.px, node.py, rx1, ry1, rx2, ry2)) pointsInRectangle.add(node.point);
+
+            if (top + 4 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+            top = node.pushChildren(stack, top);
+        }
+
+        return pointsInRectangle;
+    }
+
+    // Helper Methods
+
+    /**
+     * Returns the root of a new version with the point inserted at (px, py) below the node (copying the nodes on the path).
+     */
+    private Node<E> insert(Node<E> root, E point, double px, double py)
+    {
+        if (root == null) return new Node<>(point, px, py, x1, y1, x2, y2, null, null, null, null);
+
+        // Descending iteratively from the root, remembering the path (each node, and the quadrant taken from it).
+        List<Node<E>> path = new ArrayList<>();
+        List<Integer> quadrants = new ArrayList<>();
+        Node<E> node = root;
+        Node<E> copy;
+
+        while (true)
+        {
+            int quadrant = node.quadrant(px, py);
+
+            // Replacing the point at the same location (keeping its children).
+            if (quadrant == 0)
+            {
+                copy = new Node<>(point, px, py, node.x1, node.y1, node.x2, node.y2, node.c1, node.c2, node.c3, node.c4);
+                break;
+            }
+
+            path.add(node);
+            quadrants.add(quadrant);
+
+            Node<E> child = node.getChild(quadrant);
+
+            // Otherwise, creating a new node with the appropriate bounds for the quadrant.
+            if (child == null)
+            {
+                if (quadrant == 1) copy = new Node<>(point, px, py, node.px, node.y1, node.x2, node.py, null, null, null, null);
+                else if (quadrant == 2) copy = new Node<>(point, px, py, node.x1, node.y1, node.px, node.py, null, null, null, null);
+                else if (quadrant == 3) copy = new Node<>(point, px, py, node.x1, node.py, node.px, node.y2, null, null, null, null);
+                else copy = new Node<>(point, px, py, node.px, node.py, node.x2, node.y2, null, null, null, null);
+                break;
+            }
+
+            node = child;
+        }
+
+        return copyPath(path, quadrants, copy);
+    }
+
+    /**
+     * Returns a new version without the point, found by descending along (px, py), or this version if it is not there.
+     */
+    private PersistentQuadtree<E> remove(E point, double px, double py)
+    {
+        List<Node<E>> path = new ArrayList<>();
+        List<Integer> quadrants = new ArrayList<>();
+        Node<E> node = root;
+
+        // Descending from the root along the location, until reaching the point's node.
+        while (node != null && node.point != point)
+        {
+            int quadrant = node.quadrant(px, py);
+            if (quadrant == 0) return this; // Another point is at the location.
+
+            path.add(node);
+            quadrants.add(quadrant);
+            node = node.getChild(quadrant);
+        }
+
+        if (node == null) return this;
+
+        // Rebuilding the node's subtree from the points below it, in the node's region.
+        List<Node<E>> orphans = new ArrayList<>();
+        for (int quadrant = 1; quadrant <= 4; quadrant += 1)
+        {
+            Node<E> child = node.getChild(quadrant);
+            if (child != null) child.addNodes(orphans);
+        }
+
+        Node<E> subtree = null;
+        if (!orphans.isEmpty())
+        {
+            orphans.sort(Comparator.comparingDouble((Node<E> orphan) -> orphan.px).thenComparingDouble(orphan -> orphan.py));
+            subtree = build(orphans, node.x1, node.y1, node.x2, node.y2);
+        }
+
+        return new PersistentQuadtree<>(x1, y1, x2, y2, copyPath(path, quadrants, subtree));
+    }
+
+    /**
+     * Returns whether a point is at (px, py) below the node, descending along the location.
+     */
+    private static <E extends Point2D> boolean occupied(Node<E> root, double px, double py)
+    {
+        Node<E> node = root;
+        while (node != null)
+        {
+            int quadrant = node.quadrant(px, py);
+            if (quadrant == 0) return true;
+
+            node = node.getChild(quadrant);
+        }
+        return false;
+    }
+
+    /**
+     * Copies the nodes on the path bottom-up, each with its child on the path replaced by the copy below it,
+     * returning the new root (the copy itself if the path is empty).
+     */
+    private static <E extends Point2D> Node<E> copyPath(List<Node<E>> path, List<Integer> quadrants, Node<E> copy)
+    {
+        for (int i = path.size() - 1; i >= 0; i -= 1)
+        {
+            copy = path.get(i).withChild(quadrants.get(i), copy);
+        }
+        return copy;
+    }
+
+    /**
+     * Builds a balanced subtree from a non-empty list of nodes' points (sorted by x-coordinate, at distinct locations),
+     * as in PointQuadtree.build.
+     */
+    private static <E extends Point2D> Node<E> build(List<Node<E>> points, double x1, double y1, double x2, double y2)
+    {
+        // The median point anchors the node.
+        Node<E> anchor = points.get(points.size() / 2);
+        double px = anchor.px, py = anchor.py;
+
+        List<Node<E>> q1 = new ArrayList<>(), q2 = new ArrayList<>(), q3 = new ArrayList<>(), q4 = new ArrayList<>();
+
+        // Partitioning the points into quadrants around the anchor, with the same edge cases as insert.
+        for (Node<E> point : points)
+        {
+            int quadrant = anchor.quadrant(point.px, point.py);
+
+            if (quadrant == 1) q1.add(point);
+            else if (quadrant == 2) q2.add(point);
+            else if (quadrant == 3) q3.add(point);
+            else if (quadrant == 4) q4.add(point);
+        }
+
+        // Recursively building each quadrant, with the same bounds for the rectangle as insert.
+        return new Node<>(anchor.point, px, py, x1, y1, x2, y2,
+                q1.isEmpty() ? null : build(q1, px, y1, x2, py),
+                q2.isEmpty() ? null : build(q2, x1, y1, px, py),
+                q3.isEmpty() ? null : build(q3, x1, py, px, y2),
+                q4.isEmpty() ? null : build(q4, px, py, x2, y2));
+    }
+
+    /**
+     * Returns a fresh stack for a traversal.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <E extends Point2D> Node<E>[] newStack()
+    {
+        return (Node<E>[]) new Node[64];
+    }
+
+    /**
+     * An immutable node: a point at the location it had when inserted, its region, its children and its count.
+     */
+    private static final class Node<E extends Point2D>
+    {
+        final E point; // The point anchoring this node.
+        final double px, py; // The location of the point (where the node splits its region into quadrants).
+        final double x1, y1, x2, y2; // The region of the node.
+        final Node<E> c1, c2, c3, c4; // Children
+        final int count; // Number of points in the subtree.
+
+        Node(E point, double px, double py, double x1, double y1, double x2, double y2,
+             Node<E> c1, Node<E> c2, Node<E> c3, Node<E> c4)
+        {
+            this.point = point;
+            this.px = px;
+            this.py = py;
+            this.x1 = x1;
+            this.y1 = y1;
+            this.x2 = x2;
+            this.y2 = y2;
+            this.c1 = c1;
+            this.c2 = c2;
+            this.c3 = c3;
+            this.c4 = c4;
+
+            int count = 1;
+            if (c1 != null) count += c1.count;
+            if (c2 != null) count += c2.count;
+            if (c3 != null) count += c3.count;
+            if (c4 != null) count += c4.count;
+            this.count = count;
+        }
+
+        Node<E> getChild(int quadrant)
+        {
+            if (quadrant == 1) return c1;
+            if (quadrant == 2) return c2;
+            if (quadrant == 3) return c3;
+            if (quadrant == 4) return c4;
+            return null;
+        }
+
+        /**
+         * Returns a copy of this node with the child at the quadrant replaced (null to drop it).
+         */
+        Node<E> withChild(int quadrant, Node<E> child)
+        {
+            return new Node<>(point, px, py, x1, y1, x2, y2,
+                    quadrant == 1 ? child : c1,
+                    quadrant == 2 ? child : c2,
+                    quadrant == 3 ? child : c3,
+                    quadrant == 4 ? child : c4);
+        }
+
+        /**
+         * Returns the quadrant (1-4) in which the location belongs, or 0 if it is at the node's point (as in PointQuadtree).
+         */
+        int quadrant(double x, double y)
+        {
+            if (x == px && y == py) return 0;
+            if (x >= px && y <= py) return 1;
+            if (x <= px && y <= py) return 2;
+            if (x <= px && y >= py) return 3;
+            return 4;
+        }
+
+        /**
+         * Pushes the children onto the stack in reverse (4-1), so they are popped in order (1-4), returning the new top.
+         */
+        int pushChildren(Node<E>[] stack, int top)
+        {
+            if (c4 != null) stack[top++] = c4;
+            if (c3 != null) stack[top++] = c3;
+            if (c2 != null) stack[top++] = c2;
+            if (c1 != null) stack[top++] = c1;
+            return top;
+        }
+
+        /**
+         * Adds the nodes of the subtree to the list (iteratively, so degenerate subtrees cannot overflow the call stack).
+         */
+        void addNodes(List<Node<E>> nodes)
+        {
+            Node<E>[] stack = newStack();
+            int top = 0;
+            stack[top++] = this;
+
+            while (top > 0)
+            {
+                Node<E> node = stack[--top];
+                nodes.add(node);
+
+                if (top + 4 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                top = node.pushChildren(stack, top);
+            }
+        }
+    }
+}
@@ -1,5 +1,17 @@
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * A Point Quadtree
@@ -10,11 +22,20 @@ import java.util.List;
  * @author CBK, Fall 2016, Generic With Point2D Interface
  * @author Carter Kruse & John Deforest, Dartmouth CS 10, Spring 2022
  */
-public class PointQuadtree<E extends Point2D>
+public class PointQuadtree<E extends Point2D> implements SpatialIndex<E>
 {
-    private E point; // The point anchoring this node.
-    private int x1, y1; // Upper-left corner of the region.
-    private int x2, y2; // Bottom-right corner of the region.
+    private static final int parallelThreshold = 1 << 15; // Subtrees with fewer points are searched by a single fork-join task.
+
+    private E point; // The point anchoring this node (null only for an empty quadtree).
+    private double splitX, splitY; // Where the node splits its region into quadrants (the point's location when it anchored the node).
+    private double x1, y1; // Upper-left corner of the region.
+    private double x2, y2; // Bottom-right corner of the region.
+    private double bx1, by1, bx2, by2; // Box around the points in the subtree (refit along the path of each change).
+    private boolean tightBounds; // Whether queries starting at this node prune with the boxes rather than the regions.
+    private double balanceFactor; // Largest share of a node's points a child may hold, for inserts starting at this node (0 for no limit).
+    private int numRebuilds; // How many subtrees inserts starting at this node have rebuilt to rebalance the tree.
+    private int rebuiltCount; // The count of this subtree when a rebuild left it unbalanced (by ties), or 0 if it did not.
+    private int count; // Number of points in the subtree (0 only for an empty quadtree).
     private PointQuadtree<E> c1, c2, c3, c4; // Children
 
     /**
@@ -22,13 +43,98 @@ public class PointQuadtree<E extends Point2D>
      *
      * Initializes a leaf quadtree, holding the point in the rectangle.
      */
-    public PointQuadtree(E point, int x1, int y1, int x2, int y2)
+    public PointQuadtree(E point, double x1, double y1, double x2, double y2)
     {
-        this.point = point;
         this.x1 = x1;
         this.y1 = y1;
         this.x2 = x2;
         this.y2 = y2;
+
+        // The box starts empty, and takes in the point.
+        this.bx1 = this.by1 = Double.POSITIVE_INFINITY;
+        this.bx2 = this.by2 = Double.NEGATIVE_INFINITY;
+
+        if (point != null)
+        {
+            anchor(point);
+            include(point.getX(), point.getY());
+            this.count = 1;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * Initializes an empty quadtree over the rectangle. The first point inserted anchors it.
+     */
+    public PointQuadtree(double x1, double y1, double x2, double y2)
+    {
+        this(null, x1, y1, x2, y2);
+    }
+
+    /**
+     * Builds a balanced quadtree holding all the points, in the rectangle.
+     *
+     * Each node is anchored by the point with the median x-coordinate of its region (then y-coordinate), regardless
+     * of the order in which the points arrive. When the x-coordinates are distinct, no child holds more than half of
+     * the points below it. Points on the anchor's split lines go to the lowest-numbered quadrant, as in insert, so
+     * where many points share the median's x-coordinate the split can be lopsided. Then the middle point of those
+     * sharing it (by y-coordinate) anchors the node instead, if that leaves fewer points in the largest quadrant:
+     * for a column of points at x = 0 (y = 0 to 200) with a row along y = 0 (x = 1 to 200), the median (0, 200)
+     * would put 400 of the 401 points in the first quadrant, and (0, 100) puts 300 there.
+     * Points at the same location are handled as in insert (the later point replaces the earlier one).
+     *
+     * @param points The points to hold in the quadtree.
+     *
+     * @return The quadtree (empty if there are no points).
+     */
+    public static <E extends Point2D> PointQuadtree<E> build(Collection<E> points, double x1, double y1, double x2, double y2)
+    {
+        if (points.isEmpty()) return new PointQuadtree<>(x1, y1, x2, y2);
+
+        // Sorting the points by x-coordinate (then y-coordinate) once; partitioning keeps each quadrant sorted.
+        List<E> sortedPoints = new ArrayList<>(points);
+        sortedPoints.sort(byLocation());
+
+        return buildSorted(sortedPoints, x1, y1, x2, y2);
+    }
+
+    /**
+     * Builds the same balanced quadtree as build, splitting the work across the cores (as fork-join tasks on the common pool).
+     *
+     * The points are sorted in parallel (a stable sort, as in build). Then each node with at least parallelThreshold
+     * points below it partitions them into quadrants around its anchor, and builds each quadrant as a separate task;
+     * smaller subtrees are built by a single task, as in build.
+     *
+     * @param points The points to hold in the quadtree.
+     *
+     * @return The quadtree (empty if there are no points).
+     */
+    public static <E extends Point2D> PointQuadtree<E> buildParallel(Collection<E> points, double x1, double y1, double x2, double y2)
+    {
+        return buildParallel(points, x1, y1, x2, y2, parallelThreshold);
+    }
+
+    /**
+     * Builds the same balanced quadtree as build, as buildParallel does, building the quadrants of each node with at least
+     * the threshold's number of points below it as separate tasks (so even a small quadtree is split, with a small threshold).
+     *
+     * @param points The points to hold in the quadtree.
+     * @param threshold The fewest points below a node whose quadrants are built as separate tasks (at least 1).
+     *
+     * @return The quadtree (empty if there are no points).
+     */
+    @SuppressWarnings("unchecked")
+    public static <E extends Point2D> PointQuadtree<E> buildParallel(Collection<E> points, double x1, double y1, double x2, double y2, int threshold)
+    {
+        if (threshold < 1) throw new IllegalArgumentException("Threshold must be at least 1: " + threshold);
+
+        if (points.isEmpty()) return new PointQuadtree<>(x1, y1, x2, y2);
+
+        E[] sortedPoints = (E[]) points.toArray(new Point2D[0]);
+        Arrays.parallelSort(sortedPoints, byLocation());
+
+        return ForkJoinPool.commonPool().invoke(new BuildTask<>(Arrays.asList(sortedPoints), x1, y1, x2, y2, threshold));
     }
 
     // Getters
@@ -37,26 +143,111 @@ public class PointQuadtree<E extends Point2D>
         return point;
     }
 
-    public int getX1()
+    public double getSplitX()
+    {
+        return splitX;
+    }
+
+    public double getSplitY()
+    {
+        return splitY;
+    }
+
+    public double getX1()
     {
         return x1;
     }
 
-    public int getY1()
+    public double getY1()
     {
         return y1;
     }
 
-    public int getX2()
+    public double getX2()
     {
         return x2;
     }
 
-    public int getY2()
+    public double getY2()
     {
         return y2;
     }
 
+    public double getBoxX1()
+    {
+        return bx1;
+    }
+
+    public double getBoxY1()
+    {
+        return by1;
+    }
+
+    public double getBoxX2()
+    {
+        return bx2;
+    }
+
+    public double getBoxY2()
+    {
+        return by2;
+    }
+
+    public boolean isTightBounds()
+    {
+        return tightBounds;
+    }
+
+    /**
+     * Sets whether queries starting at this node prune subtrees with the box around their points, rather than their regions.
+     *
+     * Every node keeps a box around the points in its subtree. The box is never larger than the region, and in sparse
+     * areas it is much smaller, so more subtrees are rejected. A box grows as points are inserted, and shrinks back as
+     * they are removed or move away: remove and update refit the boxes along the point's path, from the bottom up.
+     * Off by default, so queries make the same Geometry tests as with regions alone.
+     */
+    public void setTightBounds(boolean tightBounds)
+    {
+        this.tightBounds = tightBounds;
+    }
+
+    public double getBalanceFactor()
+    {
+        return balanceFactor;
+    }
+
+    /**
+     * Returns how many subtrees inserts starting at this node have rebuilt to rebalance the tree.
+     */
+    public int getNumRebuilds()
+    {
+        return numRebuilds;
+    }
+
+    /**
+     * Sets the largest share of a node's points that one of its children may hold, for inserts starting at this node.
+     *
+     * When an insert (or insertAll) leaves a child holding more than that share, the highest such node on its path is
+     * rebuilt balanced with PointQuadtree.build, as in a scapegoat tree: a subtree of n points is only rebuilt after
+     * enough of its points have arrived unevenly to unbalance it, so the amortized cost of an insert stays bounded,
+     * and the depth stays logarithmic however the arrivals drift. Off (0) by default, so the tree never restructures.
+     *
+     * Where many points share coordinates (such as whole pixels), build cannot always split them evenly, and a rebuilt
+     * node may still be unbalanced. Such a node is not rebuilt again until its count has doubled, so the rebuilds stay
+     * amortized (though the depth may then exceed the logarithmic bound).
+     *
+     * @param balanceFactor 0 (off), or a share strictly between 0.5 (rebuilding constantly) and 1 (never rebuilding).
+     */
+    public void setBalanceFactor(double balanceFactor)
+    {
+        if (balanceFactor != 0 && (balanceFactor <= 0.5 || balanceFactor >= 1))
+        {
+            throw new IllegalArgumentException("Balance factor must be 0 (off), or between 0.5 and 1: " + balanceFactor);
+        }
+
+        this.balanceFactor = balanceFactor;
+    }
+
     /**
      * Returns the child (if any) at the given quadrant, 1-4.
      */
@@ -82,95 +273,478 @@ public class PointQuadtree<E extends Point2D>
      *
      * Edge Cases: In situations where the point is at the same x- or y-coordinate as a parent,
      * the quadrant with the lowest number (1-4) is selected for the child.
+     * With a balance factor set, the subtree it unbalances (if any) is then rebuilt.
      */
     public void insert(E point2)
     {
-        // Checking to ensure the point is not placed in the same location as the original.
-        if (point2.getX() == this.point.getX() && point2.getY() == this.point.getY())
+        // An empty quadtree takes the point as its anchor.
+        if (this.point == null)
         {
-            this.point = point2; // Replacing the original point.
+            anchor(point2);
+            include(point2.getX(), point2.getY());
+            count = 1;
+            return;
         }
 
-        // Checking to see if the point location is in the first quadrant.
-        else if (point2.getX() >= this.point.getX() && point2.getY() <= this.point.getY())
+        // Descending iteratively from the root, so degenerate (chain-like) trees cannot overflow the call stack.
+        PointQuadtree<E> node = this;
+
+        while (true)
         {
-            // If the first quadrant already has a child, recursively add the point.
-            if (this.hasChild(1))
+            // Each node on the way down holds the point in its subtree.
+            node.include(point2.getX(), point2.getY());
+            node.count += 1;
+
+            // Checking to ensure the point is not placed in the same location as the original.
+            if (point2.getX() == node.point.getX() && point2.getY() == node.point.getY())
             {
-                this.c1.insert(point2);
+                node.point = point2; // Replacing the original point.
+                adjustCounts(point2.getX(), point2.getY(), node, -1); // No point was added after all.
+                return;
             }
 
-            // Otherwise, create a new PointQuadTree with the appropriate node and bounds for the rectangle.
-            else
+            // Checking to see if the point location is in the first quadrant (split by the node's split lines).
+            else if (point2.getX() >= node.splitX && point2.getY() <= node.splitY)
             {
-                this.c1 = new PointQuadtree<>(point2, (int) this.point.getX(), this.y1, this.x2, (int) this.point.getY());
+                // If the first quadrant already has a child, descend to add the point.
+                if (node.hasChild(1))
+                {
+                    node = node.c1;
+                }
+
+                // Otherwise, create a new PointQuadTree with the appropriate node and bounds for the rectangle.
+                else
+                {
+                    node.c1 = new PointQuadtree<>(point2, node.splitX, node.y1, node.x2, node.splitY);
+                    break;
+                }
             }
-        }
 
-        // Checking to see if the point location is in the second quadrant.
-        else if (point2.getX() <= this.point.getX() && point2.getY() <= this.point.getY())
-        {
-            // If the second quadrant already has a child, recursively add the point.
-            if (this.hasChild(2))
+            // Checking to see if the point location is in the second quadrant.
+            else if (point2.getX() <= node.splitX && point2.getY() <= node.splitY)
+            {
+                // If the second quadrant already has a child, descend to add the point.
+                if (node.hasChild(2))
+                {
+                    node = node.c2;
+                }
+
+                // Otherwise, create a new PointQuadTree with the appropriate node and bounds for the rectangle.
+                else
+                {
+                    node.c2 = new PointQuadtree<>(point2, node.x1, node.y1, node.splitX, node.splitY);
+                    break;
+                }
+            }
+
+            // Checking to see if the point location is in the third quadrant.
+            else if (point2.getX() <= node.splitX && point2.getY() >= node.splitY)
             {
-                this.c2.insert(point2);
+                // If the third quadrant already has a child, descend to add the point.
+                if (node.hasChild(3))
+                {
+                    node = node.c3;
+                }
+
+                // Otherwise, create a new PointQuadTree with the appropriate node and bounds for the rectangle.
+                else
+                {
+                    node.c3 = new PointQuadtree<>(point2, node.x1, node.splitY, node.splitX, node.y2);
+                    break;
+                }
             }
 
-            // Otherwise, create a new PointQuadTree with the appropriate node and bounds for the rectangle.
+            // Otherwise, the point location is in the fourth quadrant.
             else
             {
-                this.c2 = new PointQuadtree<>(point2, this.x1, this.y1, (int) this.point.getX(), (int) this.point.getY());
+                // If the fourth quadrant already has a child, descend to add the point.
+                if (node.hasChild(4))
+                {
+                    node = node.c4;
+                }
+
+                // Otherwise, create a new PointQuadTree with the appropriate node and bounds for the rectangle.
+                else
+                {
+                    node.c4 = new PointQuadtree<>(point2, node.splitX, node.splitY, node.x2, node.y2);
+                    break;
+                }
             }
         }
 
-        // Checking to see if the point location is in the third quadrant.
-        else if (point2.getX() <= this.point.getX() && point2.getY() >= this.point.getY())
+        if (balanceFactor > 0) rebalance(point2.getX(), point2.getY());
+    }
+
+    /**
+     * Inserts all the points into the tree, which then holds the same points as if they had been inserted one at a time,
+     * in order (though its shape may differ).
+     *
+     * The batch is first sorted along a Morton (Z-order) curve over this quadtree's region (a stable sort, so a later
+     * point at the same location still replaces an earlier one), so consecutive points are usually close together.
+     * Each descent then resumes from the deepest node on the previous point's path whose region holds the point strictly
+     * inside (so insert would also have descended through it), rather than from the root; the nodes above it are only
+     * updated (counts and boxes) from the path, not searched again. An empty quadtree is built balanced, as by build.
+     * With a balance factor set, the highest unbalanced subtrees are then rebuilt.
+     *
+     * @param points The points to insert.
+     */
+    @SuppressWarnings("unchecked")
+    public void insertAll(Collection<E> points)
+    {
+        if (points.isEmpty()) return;
+
+        // An empty quadtree is rebuilt in place from the batch.
+        if (this.point == null)
+        {
+            rebuild(null, 0, new ArrayList<>(points));
+            return;
+        }
+
+        // Sorting the batch by Morton key.
+        Object[] unsorted = points.toArray();
+        long[] keys = new long[unsorted.length];
+        for (int i = 0; i < unsorted.length; i += 1)
+        {
+            Point2D point = (Point2D) unsorted[i];
+            keys[i] = LinearQuadtree.key(point.getX(), point.getY(), x1, y1, x2, y2);
+        }
+        int[] order = LinearQuadtree.sortByKey(keys);
+
+        // The path of the previous point, from the root (path[0]) down to the node holding it.
+        PointQuadtree<E>[] path = newStack();
+        int depth = 0;
+        path[depth++] = this;
+
+        for (int i = 0; i < order.length; i += 1)
         {
-            // If the third quadrant already has a child, recursively add the point.
-            if (this.hasChild(3))
+            E point2 = (E) unsorted[order[i]];
+            double px = point2.getX(), py = point2.getY();
+
+            // Backing up to the deepest node on the path whose region holds the point strictly inside.
+            while (depth > 1 && !path[depth - 1].strictlyContains(px, py))
             {
-                this.c3.insert(point2);
+                depth -= 1;
             }
 
-            // Otherwise, create a new PointQuadTree with the appropriate node and bounds for the rectangle.
-            else
+            // A point moved by update may lie anywhere in its node's region, so the nodes above are still checked for
+            // a point at the location (which insert would replace).
+            for (int j = 0; j < depth - 1; j += 1)
+            {
+                if (path[j].quadrant(px, py) == 0)
+                {
+                    depth = j + 1;
+                    break;
+                }
+            }
+
+            // The nodes above it hold the point in their subtrees.
+            for (int j = 0; j < depth - 1; j += 1)
+            {
+                path[j].include(px, py);
+                path[j].count += 1;
+            }
+
+            // Descending from there as insert does, extending the path.
+            PointQuadtree<E> node = path[depth - 1];
+
+            while (true)
+            {
+                node.include(px, py);
+                node.count += 1;
+
+                int quadrant = node.quadrant(px, py);
+
+                // Replacing the point at the same location (no point was added after all).
+                if (quadrant == 0)
+                {
+                    node.point = point2;
+                    for (int j = 0; j < depth; j += 1)
+                    {
+                        path[j].count -= 1;
+                    }
+                    break;
+                }
+
+                PointQuadtree<E> child = node.getChild(quadrant);
+                boolean created = child == null;
+
+                // Creating a new node with the appropriate bounds for the quadrant, as in insert.
+                if (created)
+                {
+                    if (quadrant == 1) child = new PointQuadtree<>(point2, node.splitX, node.y1, node.x2, node.splitY);
+                    else if (quadrant == 2) child = new PointQuadtree<>(point2, node.x1, node.y1, node.splitX, node.splitY);
+                    else if (quadrant == 3) child = new PointQuadtree<>(point2, node.x1, node.splitY, node.splitX, node.y2);
+                    else child = new PointQuadtree<>(point2, node.splitX, node.splitY, node.x2, node.y2);
+
+                    node.setChild(quadrant, child);
+                }
+
+                if (depth == path.length) path = grow(path);
+                path[depth++] = child;
+
+                if (created) break; // The new node holds the point.
+                node = child;
+            }
+        }
+
+        if (balanceFactor > 0) rebalance();
+    }
+
+    /**
+     * Updates the tree after the point has moved from (oldX, oldY) to its current location.
+     *
+     * While the point stays inside its node's region, only the boxes along its path are refit: it keeps the node, and the
+     * node keeps its split lines (so the points below it are unaffected). Only once it crosses a split line of an ancestor is it removed
+     * (its node's subtree rebuilt from the points below it, as in remove) and reinserted from the root.
+     * The cost is the descent, plus rebuilding the subtree for each crossing.
+     *
+     * Edge Cases: A quadtree holds one point per location, and insert replaces a point at the same location. So if
+     * another point is already at the new location, the moved point is removed from the tree instead (the other point
+     * is kept), and false is returned; the caller can move it off the other point and insert it again.
+     *
+     * @param point The point, already at its new location.
+     * @param oldX The x-coordinate of the point when it was inserted (or last updated).
+     * @param oldY The y-coordinate of the point when it was inserted (or last updated).
+     *
+     * @return Whether the point was found in the tree (at its old location), and is still held at its new location.
+     */
+    public boolean update(E point, double oldX, double oldY)
+    {
+        if (this.point == null) return false;
+
+        PointQuadtree<E> parent = null, node = this;
+        int slot = 0; // The quadrant of the parent holding the node.
+        boolean stays = true; // Whether the new location takes the same path down the tree as the old one.
+
+        // The ancestors of the point's node, from the root down, whose boxes are refit afterwards.
+        PointQuadtree<E>[] path = newStack();
+        int depth = 0;
+
+        // Descending from the root along the old location, until reaching the point's node.
+        while (node != null && node.point != point)
+        {
+            int quadrant = node.quadrant(oldX, oldY);
+            if (quadrant == 0) return false; // Another point is at the old location.
+
+            stays = stays && node.quadrant(point.getX(), point.getY()) == quadrant;
+
+            if (depth == path.length) path = grow(path);
+            path[depth++] = node;
+            parent = node;
+            slot = quadrant;
+            node = node.getChild(quadrant);
+        }
+
+        if (node == null) return false;
+
+        // The point stays in its node's region: the node (and its split lines) are unchanged, unless a point below it
+        // is at the new location (the only other points in the region), in which case the point is removed instead.
+        if (stays)
+        {
+            if (node.occupied(point.getX(), point.getY(), point))
             {
-                this.c3 = new PointQuadtree<>(point2, this.x1, (int) this.point.getY(), (int) this.point.getX(), this.y2);
+                List<E> orphans = new ArrayList<>();
+                for (int quadrant = 1; quadrant <= 4; quadrant += 1)
+                {
+                    if (node.hasChild(quadrant)) node.getChild(quadrant).addPoints(orphans);
+                }
+
+                node.rebuild(parent, slot, orphans);
+                refit(path, depth, -1);
+                return false;
             }
+
+            // Fitting the boxes from the node up to the new location (shrinking them if the old one was on an edge).
+            node.rebox();
+            refit(path, depth, 0);
+            return true;
+        }
+
+        // The point has crossed a split line: its node's subtree is rebuilt (balanced) from the points below it, as in
+        // remove, rather than reinserting them one at a time (which would stack them below the first), and the point is
+        // reinserted from the root.
+        List<E> orphans = new ArrayList<>();
+        for (int quadrant = 1; quadrant <= 4; quadrant += 1)
+        {
+            if (node.hasChild(quadrant)) node.getChild(quadrant).addPoints(orphans);
+        }
+
+        // The ancestors lose the point (and their boxes shrink to the points left).
+        node.rebuild(parent, slot, orphans);
+        refit(path, depth, -1);
+
+        // Leaving the point out, rather than replacing another point at its new location.
+        if (occupied(point.getX(), point.getY(), point)) return false;
+
+        this.insert(point);
+        return true;
+    }
+
+    /**
+     * Removes the point from the tree.
+     *
+     * The points below the point's node are orphaned; the node's subtree is rebuilt from them (with PointQuadtree.build),
+     * which promotes the median orphan to anchor the node. The rest of the tree is left as is, apart from the counts and
+     * boxes of the node's ancestors. Removing the last point leaves an empty quadtree.
+     *
+     * @param point The point, at the location where it was inserted (or last updated).
+     *
+     * @return Whether the point was found in the tree.
+     */
+    public boolean remove(E point)
+    {
+        if (this.point == null) return false;
+
+        PointQuadtree<E> parent = null, node = this;
+        int slot = 0; // The quadrant of the parent holding the node.
+
+        // The ancestors of the point's node, from the root down, whose counts and boxes are refit afterwards.
+        PointQuadtree<E>[] path = newStack();
+        int depth = 0;
+
+        // Descending from the root along the point's location, until reaching the point's node.
+        while (node != null && node.point != point)
+        {
+            int quadrant = node.quadrant(point.getX(), point.getY());
+            if (quadrant == 0) return false; // Another point is at the location.
+
+            if (depth == path.length) path = grow(path);
+            path[depth++] = node;
+            parent = node;
+            slot = quadrant;
+            node = node.getChild(quadrant);
+        }
+
+        if (node == null) return false;
+
+        // Collecting the orphaned points below the node.
+        List<E> orphans = new ArrayList<>();
+        for (int quadrant = 1; quadrant <= 4; quadrant += 1)
+        {
+            if (node.hasChild(quadrant)) node.getChild(quadrant).addPoints(orphans);
+        }
+
+        // The rebuilt subtree counts (and boxes) its own points; the ancestors lose the point, and their boxes shrink.
+        node.rebuild(parent, slot, orphans);
+        refit(path, depth, -1);
+        return true;
+    }
+
+    /**
+     * Removes all the points in the collection from the tree.
+     *
+     * Each removed point is found by descending along its location, as in remove. The subtree of the highest node on
+     * that path whose anchor is removed is rebuilt once, from all of its remaining points, rather than once per removed
+     * point; then the counts and boxes are recomputed along the paths down to the rebuilt subtrees. So a batch of k
+     * removals only pays for the paths and subtrees it touches, not for the whole tree.
+     *
+     * @param points The points, at the locations where they were inserted (or last updated).
+     *
+     * @return Whether any point was removed from the tree.
+     */
+    public boolean removeAll(Collection<E> points)
+    {
+        if (this.point == null || points.isEmpty()) return false;
+
+        // Points are matched by identity, as in remove.
+        Set<E> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        removed.addAll(points);
+
+        // The root's anchor is removed: the whole tree is rebuilt from the points that remain.
+        if (removed.contains(this.point))
+        {
+            rebuild(null, 0, survivors(removed));
+            return true;
         }
 
-        // Checking to see if the point location is in the fourth quadrant.
-        else if (point2.getX() >= this.point.getX() && point2.getY() >= this.point.getY())
+        // Descending to each removed point, stopping at the highest node on the way whose anchor is removed; those
+        // subtrees do not overlap, so each is rebuilt once (and the paths above them are unaffected by the rebuilds).
+        Set<PointQuadtree<E>> targets = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<List<PointQuadtree<E>>> paths = new ArrayList<>(); // The nodes from the root down to each target's parent.
+        List<Integer> slots = new ArrayList<>(); // The quadrant of the parent holding each target.
+
+        for (E point : removed)
         {
-            // If the fourth quadrant already has a child, recursively add the point.
-            if (this.hasChild(4))
+            List<PointQuadtree<E>> path = new ArrayList<>();
+            PointQuadtree<E> node = this;
+            int slot = 0;
+
+            while (node != null && !removed.contains(node.point))
             {
-                this.c4.insert(point2);
+                int quadrant = node.quadrant(point.getX(), point.getY());
+                if (quadrant == 0) break; // Another point is at the location.
+
+                path.add(node);
+                slot = quadrant;
+                node = node.getChild(quadrant);
             }
 
-            // Otherwise, create a new PointQuadTree with the appropriate node and bounds for the rectangle.
-            else
+            if (node == null || !removed.contains(node.point) || !targets.add(node)) continue;
+
+            paths.add(path);
+            slots.add(slot);
+        }
+
+        if (paths.isEmpty()) return false;
+
+        // Rebuilding each of those subtrees once, from the points that remain in it.
+        for (int i = 0; i < paths.size(); i += 1)
+        {
+            PointQuadtree<E> parent = paths.get(i).get(paths.get(i).size() - 1);
+            PointQuadtree<E> child = parent.getChild(slots.get(i));
+            child.rebuild(parent, slots.get(i), child.survivors(removed));
+        }
+
+        // Recounting (and reboxing) each path from the bottom up; a node shared by several paths is done last for the
+        // path whose nodes below it were done last, so it ends up counting all of its children's changes.
+        for (List<PointQuadtree<E>> path : paths)
+        {
+            for (int i = path.size() - 1; i >= 0; i -= 1)
             {
-                this.c4 = new PointQuadtree<>(point2, (int) this.point.getX(), (int) this.point.getY(), this.x2, this.y2);
+                path.get(i).rebox();
             }
         }
+
+        return true;
     }
 
     /**
-     * Finds the number of points in the quadtree (including its descendants).
+     * Finds the number of points in the quadtree (including its descendants), kept as points are inserted and removed.
      */
     public int size()
     {
-        // The count starts at one, as we consider the node of the quadtree.
-        int count = 1;
+        return count;
+    }
+
+    /**
+     * Finds the depth of the quadtree: the number of nodes on its longest path from the root (0 if it is empty).
+     */
+    public int depth()
+    {
+        if (this.point == null) return 0;
 
-        // Checking through each quadrant for children and recursively returning the size.
-        if (this.hasChild(1)) count += this.c1.size();
-        if (this.hasChild(2)) count += this.c2.size();
-        if (this.hasChild(3)) count += this.c3.size();
-        if (this.hasChild(4)) count += this.c4.size();
+        int depth = 0;
 
-        return count;
+        // Walking down one level at a time, so degenerate (chain-like) trees cannot overflow the call stack.
+        List<PointQuadtree<E>> level = new ArrayList<>();
+        level.add(this);
+
+        while (!level.isEmpty())
+        {
+            depth += 1;
+
+            List<PointQuadtree<E>> nextLevel = new ArrayList<>();
+            for (PointQuadtree<E> node : level)
+            {
+                for (int quadrant = 1; quadrant <= 4; quadrant += 1)
+                {
+                    if (node.hasChild(quadrant)) nextLevel.add(node.getChild(quadrant));
+                }
+            }
+            level = nextLevel;
+        }
+
+        return depth;
     }
 
     /**
@@ -183,7 +757,7 @@ public class PointQuadtree<E extends Point2D>
         // Initializing the list of points in the quadtree.
         List<E> pointsList = new ArrayList<>();
 
-        // Helper method adds each point in the quadtree to the list, recursively.
+        // Helper method adds each point in the quadtree to the list.
         addPoints(pointsList);
         return pointsList;
     }
@@ -202,85 +776,1161 @@ public class PointQuadtree<E extends Point2D>
         // Initializing the list of the points in the circle.
         List<E> pointsInCircle = new ArrayList<>();
 
-        // Helper method adds each point in the circle to the list, recursively.
+        // Helper method adds each point in the circle to the list.
         addPointsInCircle(pointsInCircle, cx, cy, cr);
         return pointsInCircle;
     }
 
-    // Helper Methods
-
     /**
-     * Accumulator -> Adds all points in the quadtree to a list, recursively.
+     * Uses the quadtree to find all points within the rectangle (not on its edges, as in GeometryExtra.pointInRectangle),
+     * skipping the subtrees whose region cannot hold such a point (GeometryExtra.rectangleIntersectsRectangle).
      *
-     * @param pointsList The list of points to consider when adding points to the list of all points.
+     * @param rx1 Top left x coordinate of rectangle.
+     * @param ry1 Top left y coordinate of rectangle.
+     * @param rx2 Bottom right x coordinate of rectangle.
+     * @param ry2 Bottom right y coordinate of rectangle.
+     *
+     * @return The points in the rectangle.
      */
-    public void addPoints(List<E> pointsList)
+    public List<E> findInRectangle(double rx1, double ry1, double rx2, double ry2)
     {
-        // Start by adding the point which is the node.
-        pointsList.add(this.point);
+        // Initializing the list of the points in the rectangle.
+        List<E> pointsInRectangle = new ArrayList<>();
 
-        // Recursively pass the points which are the children of the node to the method.
-        if (this.hasChild(1))
-        {
-            this.c1.addPoints(pointsList);
-        }
-
-        if (this.hasChild(2))
-        {
-            this.c2.addPoints(pointsList);
-        }
-
-        if (this.hasChild(3))
-        {
-            this.c3.addPoints(pointsList);
-        }
-
-        if (this.hasChild(4))
-        {
-            this.c4.addPoints(pointsList);
-        }
+        // Helper method adds each point in the rectangle to the list.
+        addPointsInRectangle(pointsInRectangle, rx1, ry1, rx2, ry2);
+        return pointsInRectangle;
     }
 
     /**
-     * Accumulator -> Adds all points in the circle to a list, recursively.
+     * Passes each point within the circle to the action, without building a list.
      *
-     * @param pointsInCircleList The list of points to consider when adding points to the list.
-     * @param cx The x-coordinate of the center of the circle.
-     * @param cy The y-coordinate of the center of the circle.
-     * @param cr The radius of the circle.
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     * @param action What to do with each point in the circle.
      */
-    public void addPointsInCircle(List<E> pointsInCircleList, double cx, double cy, double cr)
+    public void forEachInCircle(double cx, double cy, double cr, Consumer<? super E> action)
     {
-        // Using the Geometry helper method to determine if the circle intersects a given quadrant.
-        if (Geometry.circleIntersectsRectangle(cx, cy, cr, this.x1, this.y1, this.x2, this.y2))
+        // An empty quadtree has no points.
+        if (this.point == null) return;
+
+        boolean tight = this.tightBounds; // Pruning with the boxes, or the regions.
+        PointQuadtree<E>[] stack = newStack();
+        int top = 0;
+        stack[top++] = this;
+
+        while (top > 0)
         {
-            // Using the Geometry helper method to determine if the point is within the circle.
-            if (Geometry.pointInCircle(this.point.getX(), this.point.getY(), cx, cy, cr))
-            {
-                // Adding the point which is within the circle.
-                pointsInCircleList.add(this.point);
-            }
+            PointQuadtree<E> node = stack[--top];
 
-            // Recursively pass the points which are the children of the node to the method.
-            if (hasChild(1))
+            // Using the Geometry helper method to determine if the circle intersects a given quadrant.
+            if (node.intersectsCircle(cx, cy, cr, tight))
             {
-                this.c1.addPointsInCircle(pointsInCircleList, cx, cy, cr);
-            }
+                // The whole subtree is inside the circle: passing on all of its points, with no further tests.
+                if (node.count > 1 && Geometry.rectangleInCircle(cx, cy, cr, node.bx1, node.by1, node.bx2, node.by2))
+                {
+                    int floor = top;
+                    stack[top++] = node;
 
-            if (hasChild(2))
-            {
-                this.c2.addPointsInCircle(pointsInCircleList, cx, cy, cr);
-            }
+                    while (top > floor)
+                    {
+                        PointQuadtree<E> inside = stack[--top];
+                        action.accept(inside.point);
 
-            if (hasChild(3))
-            {
-                this.c3.addPointsInCircle(pointsInCircleList, cx, cy, cr);
-            }
+                        if (top + 4 > stack.length) stack = grow(stack);
+                        if (inside.c4 != null) stack[top++] = inside.c4;
+                        if (inside.c3 != null) stack[top++] = inside.c3;
+                        if (inside.c2 != null) stack[top++] = inside.c2;
+                        if (inside.c1 != null) stack[top++] = inside.c1;
+                    }
+                    continue;
+                }
 
-            if (hasChild(4))
-            {
-                this.c4.addPointsInCircle(pointsInCircleList, cx, cy, cr);
+                // Using the Geometry helper method to determine if the point is within the circle.
+                if (Geometry.pointInCircle(node.point.getX(), node.point.getY(), cx, cy, cr))
+                {
+                    action.accept(node.point);
+                }
+
+                // Pushing the children in reverse, so they are visited in order (1-4).
+                if (top + 4 > stack.length) stack = grow(stack);
+                if (node.c4 != null) stack[top++] = node.c4;
+                if (node.c3 != null) stack[top++] = node.c3;
+                if (node.c2 != null) stack[top++] = node.c2;
+                if (node.c1 != null) stack[top++] = node.c1;
             }
         }
     }
+
+    /**
+     * Finds all points within the circle, in the same order as findInCircle, splitting the search of a large quadtree
+     * across the cores (as fork-join tasks on the common pool).
+     *
+     * Each subtree holding at least parallelThreshold points is split into a task per child, and smaller subtrees are
+     * searched by a single task with its own stack. Each task builds its own list, and the lists are joined in order
+     * (1-4), so the tasks share nothing while they run. A quadtree smaller than the threshold is searched as by findInCircle.
+     * The Geometry counts are not reliable while tasks run at once (the counters are not synchronized).
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     *
+     * @return The points in the circle.
+     */
+    public List<E> findInCircleParallel(double cx, double cy, double cr)
+    {
+        return findInCircleParallel(cx, cy, cr, parallelThreshold);
+    }
+
+    /**
+     * Finds all points within the circle, as findInCircleParallel does, splitting each subtree holding at least the
+     * threshold's number of points into a task per child (so even a small quadtree is split, with a small threshold).
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     * @param threshold The fewest points in a subtree which is split into tasks (at least 1).
+     *
+     * @return The points in the circle.
+     */
+    public List<E> findInCircleParallel(double cx, double cy, double cr, int threshold)
+    {
+        if (threshold < 1) throw new IllegalArgumentException("Threshold must be at least 1: " + threshold);
+
+        if (this.count < threshold) return findInCircle(cx, cy, cr);
+
+        return ForkJoinPool.commonPool().invoke(new CircleSearch<>(this, cx, cy, cr, this.tightBounds, false, threshold));
+    }
+
+    /**
+     * Counts the points within the circle, without building a list.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     *
+     * @return The number of points in the circle.
+     */
+    public int countInCircle(double cx, double cy, double cr)
+    {
+        // An empty quadtree has no points.
+        if (this.point == null) return 0;
+
+        int count = 0;
+
+        boolean tight = this.tightBounds;
+        PointQuadtree<E>[] stack = newStack();
+        int top = 0;
+        stack[top++] = this;
+
+        while (top > 0)
+        {
+            PointQuadtree<E> node = stack[--top];
+
+            if (node.intersectsCircle(cx, cy, cr, tight))
+            {
+                // The whole subtree is inside the circle: counting its points at once.
+                if (node.count > 1 && Geometry.rectangleInCircle(cx, cy, cr, node.bx1, node.by1, node.bx2, node.by2))
+                {
+                    count += node.count;
+                    continue;
+                }
+
+                if (Geometry.pointInCircle(node.point.getX(), node.point.getY(), cx, cy, cr)) count += 1;
+
+                if (top + 4 > stack.length) stack = grow(stack);
+                if (node.c4 != null) stack[top++] = node.c4;
+                if (node.c3 != null) stack[top++] = node.c3;
+                if (node.c2 != null) stack[top++] = node.c2;
+                if (node.c1 != null) stack[top++] = node.c1;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns whether there is a point other than self within the circle, stopping at the first one found.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     * @param self The point to ignore (compared by identity), such as the point at the center of the circle.
+     */
+    public boolean anyInCircleExcept(double cx, double cy, double cr, E self)
+    {
+        // An empty quadtree has no points.
+        if (this.point == null) return false;
+
+        boolean tight = this.tightBounds;
+        PointQuadtree<E>[] stack = newStack();
+        int top = 0;
+        stack[top++] = this;
+
+        while (top > 0)
+        {
+            PointQuadtree<E> node = stack[--top];
+
+            if (node.intersectsCircle(cx, cy, cr, tight))
+            {
+                // The whole subtree (of at least two points, so at least one other than self) is inside the circle.
+                if (node.count > 1 && Geometry.rectangleInCircle(cx, cy, cr, node.bx1, node.by1, node.bx2, node.by2)) return true;
+
+                // Stopping as soon as another point is found in the circle.
+                if (node.point != self && Geometry.pointInCircle(node.point.getX(), node.point.getY(), cx, cy, cr)) return true;
+
+                if (top + 4 > stack.length) stack = grow(stack);
+                if (node.c4 != null) stack[top++] = node.c4;
+                if (node.c3 != null) stack[top++] = node.c3;
+                if (node.c2 != null) stack[top++] = node.c2;
+                if (node.c1 != null) stack[top++] = node.c1;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Passes each pair of points within the distance of each other to the action, once per pair, in a single traversal.
+     *
+     * This is a dual-tree traversal: the pairs of points in different subtrees are found by walking the two subtrees
+     * together, skipping both at once when their boxes are farther apart than the distance, so the upper levels of the
+     * tree are walked once in all rather than once per point (as with a findInCircle for each point).
+     * Each pair is passed once, in no particular order of the two points.
+     *
+     * @param distance How close (inclusive) two points must be.
+     * @param action What to do with each pair of points.
+     */
+    public void forEachPairWithin(double distance, BiConsumer<? super E, ? super E> action)
+    {
+        // An empty quadtree has no points.
+        if (this.point == null) return;
+
+        // The pending tasks: all pairs within a subtree (self), between two disjoint subtrees (cross),
+        // or between a node's point and the points of a subtree below it (single).
+        PairTasks<E> tasks = new PairTasks<>();
+        tasks.push(this, null, PairTasks.self);
+
+        while (tasks.top > 0)
+        {
+            tasks.top -= 1;
+            PointQuadtree<E> a = tasks.as[tasks.top], b = tasks.bs[tasks.top];
+            int kind = tasks.kinds[tasks.top];
+
+            if (kind == PairTasks.self)
+            {
+                // The node's point with each subtree below it, the pairs within each subtree, and the pairs across subtrees.
+                for (int i = 1; i <= 4; i += 1)
+                {
+                    PointQuadtree<E> ci = a.getChild(i);
+                    if (ci == null) continue;
+
+                    tasks.push(a, ci, PairTasks.single);
+                    tasks.push(ci, null, PairTasks.self);
+
+                    for (int j = i + 1; j <= 4; j += 1)
+                    {
+                        if (a.hasChild(j)) tasks.push(ci, a.getChild(j), PairTasks.cross);
+                    }
+                }
+            }
+
+            else if (kind == PairTasks.cross)
+            {
+                // Skipping both subtrees when their boxes are too far apart.
+                if (boxDistanceSquared(a, b) > distance * distance) continue;
+
+                if (Geometry.pointInCircle(b.point.getX(), b.point.getY(), a.point.getX(), a.point.getY(), distance))
+                {
+                    action.accept(a.point, b.point);
+                }
+
+                // Each point with the other subtree's children, and the children of both with each other.
+                for (int i = 1; i <= 4; i += 1)
+                {
+                    if (b.hasChild(i)) tasks.push(a, b.getChild(i), PairTasks.single);
+                    if (!a.hasChild(i)) continue;
+
+                    PointQuadtree<E> ai = a.getChild(i);
+                    tasks.push(b, ai, PairTasks.single);
+
+                    for (int j = 1; j <= 4; j += 1)
+                    {
+                        if (b.hasChild(j)) tasks.push(ai, b.getChild(j), PairTasks.cross);
+                    }
+                }
+            }
+
+            else
+            {
+                // Skipping the subtree when its box is too far from the point.
+                double px = a.point.getX(), py = a.point.getY();
+                if (Geometry.rectangleDistanceSquared(px, py, b.bx1, b.by1, b.bx2, b.by2) > distance * distance) continue;
+
+                if (Geometry.pointInCircle(b.point.getX(), b.point.getY(), px, py, distance))
+                {
+                    action.accept(a.point, b.point);
+                }
+
+                for (int i = 1; i <= 4; i += 1)
+                {
+                    if (b.hasChild(i)) tasks.push(a, b.getChild(i), PairTasks.single);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the point nearest to the location.
+     *
+     * @param x Location x.
+     * @param y Location y.
+     *
+     * @return The nearest point, or null if the quadtree is empty.
+     */
+    public E nearest(double x, double y)
+    {
+        List<E> nearestPoints = nearest(x, y, 1);
+        return nearestPoints.isEmpty() ? null : nearestPoints.get(0);
+    }
+
+    /**
+     * Finds the k points nearest to the location, with a best-first search.
+     *
+     * Nodes are visited in order of the distance from the location to their rectangle (Geometry.rectangleDistanceSquared,
+     * which counts the visits), and the search stops once no unvisited rectangle is closer than the k-th nearest point so far.
+     *
+     * @param x Location x.
+     * @param y Location y.
+     * @param k How many points to find.
+     *
+     * @return The nearest points (fewer if the quadtree holds fewer than k), from nearest to farthest.
+     */
+    public List<E> nearest(double x, double y, int k)
+    {
+        List<E> nearestPoints = new ArrayList<>();
+        if (this.point == null || k <= 0) return nearestPoints;
+
+        // The nodes still to visit, closest rectangle first; and the best points so far, farthest first (at most k).
+        PriorityQueue<Candidate<PointQuadtree<E>>> nodes = new PriorityQueue<>((a, b) -> Double.compare(a.distance, b.distance));
+        PriorityQueue<Candidate<E>> best = new PriorityQueue<>((a, b) -> Double.compare(b.distance, a.distance));
+
+        boolean tight = this.tightBounds;
+        nodes.add(new Candidate<>(this, distanceSquared(x, y, tight)));
+
+        while (!nodes.isEmpty())
+        {
+            Candidate<PointQuadtree<E>> closest = nodes.poll();
+
+            // No remaining node can hold a point nearer than the k-th best so far.
+            if (best.size() == k && closest.distance > best.peek().distance) break;
+
+            PointQuadtree<E> node = closest.item;
+
+            // Keeping the node's point, if it is one of the k nearest so far.
+            double dx = node.point.getX() - x, dy = node.point.getY() - y;
+            double distance = dx * dx + dy * dy;
+
+            if (best.size() < k)
+            {
+                best.add(new Candidate<>(node.point, distance));
+            }
+
+            else if (distance < best.peek().distance)
+            {
+                best.poll();
+                best.add(new Candidate<>(node.point, distance));
+            }
+
+            // Queueing the children whose rectangles could still hold one of the k nearest points.
+            for (int quadrant = 1; quadrant <= 4; quadrant += 1)
+            {
+                PointQuadtree<E> child = node.getChild(quadrant);
+                if (child == null) continue;
+
+                double bound = child.distanceSquared(x, y, tight);
+                if (best.size() < k || bound <= best.peek().distance)
+                {
+                    nodes.add(new Candidate<>(child, bound));
+                }
+            }
+        }
+
+        // Emptying the best points farthest first, so they are listed nearest first.
+        while (!best.isEmpty())
+        {
+            nearestPoints.add(best.poll().item);
+        }
+        Collections.reverse(nearestPoints);
+
+        return nearestPoints;
+    }
+
+    /**
+     * Compiles the quadtree into a read-only FrozenQuadtree, whose queries walk flat arrays instead of nodes.
+     * The frozen copy does not follow later changes to this quadtree (or to the locations of its points).
+     */
+    public FrozenQuadtree<E> freeze()
+    {
+        return new FrozenQuadtree<>(this);
+    }
+
+    // Helper Methods
+
+    /**
+     * Builds a balanced quadtree from a non-empty list of points, sorted by x-coordinate (balanced as far as ties on
+     * the median's x-coordinate allow, as described for build).
+     */
+    private static <E extends Point2D> PointQuadtree<E> buildSorted(List<E> points, double x1, double y1, double x2, double y2)
+    {
+        // The median point anchors the node (or the middle one of those sharing its x-coordinate).
+        PointQuadtree<E> tree = new PointQuadtree<>(points.get(anchorIndex(points)), x1, y1, x2, y2);
+        List<List<E>> quadrants = tree.partition(points);
+
+        // Recursively building each quadrant, with the same bounds for the rectangle as insert.
+        double px = tree.splitX, py = tree.splitY;
+        if (!quadrants.get(0).isEmpty()) tree.c1 = buildSorted(quadrants.get(0), px, y1, x2, py);
+        if (!quadrants.get(1).isEmpty()) tree.c2 = buildSorted(quadrants.get(1), x1, y1, px, py);
+        if (!quadrants.get(2).isEmpty()) tree.c3 = buildSorted(quadrants.get(2), x1, py, px, y2);
+        if (!quadrants.get(3).isEmpty()) tree.c4 = buildSorted(quadrants.get(3), px, py, x2, y2);
+
+        tree.includeChildren();
+        return tree;
+    }
+
+    /**
+     * Returns the index of the point to anchor a node holding the points (sorted by x-coordinate): the median, or the
+     * middle one of the points sharing its x-coordinate, if that leaves fewer points in the largest quadrant.
+     */
+    private static <E extends Point2D> int anchorIndex(List<E> points)
+    {
+        int median = points.size() / 2;
+        double mx = points.get(median).getX();
+
+        // Finding the run of points sharing the median's x-coordinate (sorted by y-coordinate within it).
+        int first = median, last = median;
+        while (first > 0 && points.get(first - 1).getX() == mx) first -= 1;
+        while (last < points.size() - 1 && points.get(last + 1).getX() == mx) last += 1;
+
+        int middle = (first + last) / 2;
+        if (middle == median) return median;
+
+        return largestQuadrant(points, points.get(middle)) < largestQuadrant(points, points.get(median)) ? middle : median;
+    }
+
+    /**
+     * Returns how many of the points would be in the largest quadrant of a node anchored by the given point.
+     */
+    private static <E extends Point2D> int largestQuadrant(List<E> points, E anchor)
+    {
+        PointQuadtree<E> node = new PointQuadtree<>(anchor, 0, 0, 0, 0); // Only its split lines are used.
+        int[] counts = new int[5]; // Indexed by quadrant (0 for the anchor's location).
+
+        for (E point : points)
+        {
+            counts[node.quadrant(point.getX(), point.getY())] += 1;
+        }
+
+        return Math.max(Math.max(counts[1], counts[2]), Math.max(counts[3], counts[4]));
+    }
+
+    /**
+     * Returns the order in which build sorts the points: by x-coordinate, then y-coordinate.
+     */
+    private static <E extends Point2D> Comparator<E> byLocation()
+    {
+        return Comparator.comparingDouble((E point) -> point.getX()).thenComparingDouble(point -> point.getY());
+    }
+
+    /**
+     * Partitions the points (sorted by x-coordinate) into the quadrants (1-4) around this node's anchor, keeping each
+     * quadrant sorted, with the same edge cases as insert. A point at the anchor's location replaces it
+     * (the last point at its location is kept).
+     *
+     * @return The points in each quadrant (the list at index quadrant - 1).
+     */
+    private List<List<E>> partition(List<E> points)
+    {
+        List<List<E>> quadrants = new ArrayList<>();
+        for (int quadrant = 1; quadrant <= 4; quadrant += 1)
+        {
+            quadrants.add(new ArrayList<>());
+        }
+
+        for (E point : points)
+        {
+            int quadrant = quadrant(point.getX(), point.getY());
+
+            if (quadrant == 0) anchor(point); // Replacing the anchor.
+            else quadrants.get(quadrant - 1).add(point);
+        }
+
+        return quadrants;
+    }
+
+    /**
+     * Returns whether a point other than self is at the location, in this node's subtree.
+     * Descends along the split lines, so it passes the node of self (if self is at the location) to the points below.
+     */
+    private boolean occupied(double px, double py, E self)
+    {
+        PointQuadtree<E> node = this;
+        while (node != null)
+        {
+            if (node.point != self && node.point.getX() == px && node.point.getY() == py) return true;
+            node = node.getChild(node.splitQuadrant(px, py));
+        }
+        return false;
+    }
+
+    /**
+     * Recomputes this node's box and count from its anchor and its children (after the points below it change).
+     */
+    private void rebox()
+    {
+        bx1 = bx2 = point.getX();
+        by1 = by2 = point.getY();
+        includeChildren();
+    }
+
+    /**
+     * Takes the boxes and counts of this node's (newly built) children into its own box and count.
+     */
+    private void includeChildren()
+    {
+        for (int quadrant = 1; quadrant <= 4; quadrant += 1)
+        {
+            PointQuadtree<E> child = getChild(quadrant);
+            if (child == null) continue;
+
+            include(child.bx1, child.by1);
+            include(child.bx2, child.by2);
+        }
+        recount();
+    }
+
+    /**
+     * Helper for removeAll -> Builds a list of the points in the quadtree (including its descendants) that are not removed.
+     */
+    private List<E> survivors(Set<E> removed)
+    {
+        List<E> survivors = new ArrayList<>();
+        for (E point : allPoints())
+        {
+            if (!removed.contains(point)) survivors.add(point);
+        }
+        return survivors;
+    }
+
+    /**
+     * Replaces this node's subtree with a balanced subtree holding the points, in the same rectangle.
+     * The root is rebuilt in place (as it is the tree itself); any other node is swapped in its parent.
+     *
+     * @param parent The parent of this node (null for the root).
+     * @param slot The quadrant of the parent holding this node.
+     * @param points The points for the subtree to hold.
+     */
+    private void rebuild(PointQuadtree<E> parent, int slot, List<E> points)
+    {
+        PointQuadtree<E> subtree = build(points, this.x1, this.y1, this.x2, this.y2);
+
+        if (parent == null)
+        {
+            this.point = subtree.point;
+            this.splitX = subtree.splitX;
+            this.splitY = subtree.splitY;
+            this.bx1 = subtree.bx1;
+            this.by1 = subtree.by1;
+            this.bx2 = subtree.bx2;
+            this.by2 = subtree.by2;
+            this.count = subtree.count;
+            this.rebuiltCount = subtree.rebuiltCount;
+            this.c1 = subtree.c1;
+            this.c2 = subtree.c2;
+            this.c3 = subtree.c3;
+            this.c4 = subtree.c4;
+        }
+
+        else
+        {
+            parent.setChild(slot, points.isEmpty() ? null : subtree);
+        }
+    }
+
+    /**
+     * Helper for insert -> Rebuilds the highest unbalanced node on the path down to the location (if any), with its points.
+     */
+    private void rebalance(double px, double py)
+    {
+        PointQuadtree<E> parent = null, node = this;
+        int slot = 0; // The quadrant of the parent holding the node.
+
+        while (node != null)
+        {
+            if (node.needsRebuild(balanceFactor))
+            {
+                node.rebuild(parent, slot, node.allPoints());
+                numRebuilds += 1;
+                (parent == null ? this : parent.getChild(slot)).markUnbalanced(balanceFactor);
+                return;
+            }
+
+            int quadrant = node.quadrant(px, py);
+            if (quadrant == 0) return; // Reaching the node holding the location.
+
+            parent = node;
+            slot = quadrant;
+            node = node.getChild(quadrant);
+        }
+    }
+
+    /**
+     * Helper for insertAll -> Rebuilds the highest unbalanced nodes in the tree (if any), each with its points.
+     */
+    private void rebalance()
+    {
+        if (needsRebuild(balanceFactor))
+        {
+            rebuild(null, 0, allPoints());
+            numRebuilds += 1;
+            markUnbalanced(balanceFactor);
+            return;
+        }
+
+        PointQuadtree<E>[] stack = newStack();
+        int top = 0;
+        stack[top++] = this;
+
+        while (top > 0)
+        {
+            PointQuadtree<E> node = stack[--top];
+            if (top + 4 > stack.length) stack = grow(stack);
+
+            for (int quadrant = 1; quadrant <= 4; quadrant += 1)
+            {
+                PointQuadtree<E> child = node.getChild(quadrant);
+                if (child == null) continue;
+
+                // A rebuilt subtree is balanced (or marked where ties left it unbalanced), so the walk does not descend into it.
+                if (child.needsRebuild(balanceFactor))
+                {
+                    child.rebuild(node, quadrant, child.allPoints());
+                    numRebuilds += 1;
+                    node.getChild(quadrant).markUnbalanced(balanceFactor);
+                }
+                else stack[top++] = child;
+            }
+        }
+    }
+
+    /**
+     * Returns whether this node is unbalanced, and was not left unbalanced by a rebuild since its count last doubled.
+     */
+    private boolean needsRebuild(double balanceFactor)
+    {
+        return isUnbalanced(balanceFactor) && count >= 2 * rebuiltCount;
+    }
+
+    /**
+     * Marks each node of this (newly rebuilt) subtree which is still unbalanced, with its count, so it is not rebuilt
+     * again until its count doubles.
+     */
+    private void markUnbalanced(double balanceFactor)
+    {
+        PointQuadtree<E>[] stack = newStack();
+        int top = 0;
+        stack[top++] = this;
+
+        while (top > 0)
+        {
+            PointQuadtree<E> node = stack[--top];
+            node.rebuiltCount = node.isUnbalanced(balanceFactor) ? node.count : 0;
+
+            if (top + 4 > stack.length) stack = grow(stack);
+            if (node.c4 != null) stack[top++] = node.c4;
+            if (node.c3 != null) stack[top++] = node.c3;
+            if (node.c2 != null) stack[top++] = node.c2;
+            if (node.c1 != null) stack[top++] = node.c1;
+        }
+    }
+
+    /**
+     * Returns whether one of this node's children holds more than the share (balanceFactor) of its points.
+     */
+    private boolean isUnbalanced(double balanceFactor)
+    {
+        double limit = balanceFactor * count;
+        return (c1 != null && c1.count > limit) || (c2 != null && c2.count > limit)
+            || (c3 != null && c3.count > limit) || (c4 != null && c4.count > limit);
+    }
+
+    /**
+     * Sets the child at the given quadrant, 1-4.
+     */
+    private void setChild(int quadrant, PointQuadtree<E> child)
+    {
+        if (quadrant == 1) c1 = child;
+        else if (quadrant == 2) c2 = child;
+        else if (quadrant == 3) c3 = child;
+        else if (quadrant == 4) c4 = child;
+    }
+
+    /**
+     * Sets the point anchoring this node, splitting the region at its location.
+     */
+    private void anchor(E point)
+    {
+        this.point = point;
+        this.splitX = point.getX();
+        this.splitY = point.getY();
+    }
+
+    /**
+     * Sets this node's count from the counts of its children.
+     */
+    private void recount()
+    {
+        count = 1;
+        if (c1 != null) count += c1.count;
+        if (c2 != null) count += c2.count;
+        if (c3 != null) count += c3.count;
+        if (c4 != null) count += c4.count;
+    }
+
+    /**
+     * Adds delta to the count of each node from this one down to the target (inclusive), along the path to the location.
+     */
+    private void adjustCounts(double px, double py, PointQuadtree<E> target, int delta)
+    {
+        PointQuadtree<E> node = this;
+        while (node != target)
+        {
+            node.count += delta;
+            node = node.getChild(node.quadrant(px, py));
+        }
+        target.count += delta;
+    }
+
+    /**
+     * Refits the box of each node on the path (the first depth entries, from the root down) from the bottom up, after
+     * the points below the last of them change, and adds delta to their counts. Once a node's box is unchanged, so are
+     * the boxes above it, and only their counts are adjusted.
+     */
+    private static <E extends Point2D> void refit(PointQuadtree<E>[] path, int depth, int delta)
+    {
+        int i = depth - 1;
+        for (; i >= 0; i -= 1)
+        {
+            PointQuadtree<E> node = path[i];
+            double bx1 = node.bx1, by1 = node.by1, bx2 = node.bx2, by2 = node.by2;
+
+            node.rebox();
+            if (node.bx1 == bx1 && node.by1 == by1 && node.bx2 == bx2 && node.by2 == by2) break;
+        }
+
+        // The nodes above the first unchanged box.
+        for (i -= 1; i >= 0 && delta != 0; i -= 1)
+        {
+            path[i].count += delta;
+        }
+    }
+
+    /**
+     * Grows the box to take in the location.
+     */
+    private void include(double px, double py)
+    {
+        if (px < bx1) bx1 = px;
+        if (py < by1) by1 = py;
+        if (px > bx2) bx2 = px;
+        if (py > by2) by2 = py;
+    }
+
+    /**
+     * Returns whether the location is strictly inside this node's region (not on its edges).
+     */
+    private boolean strictlyContains(double px, double py)
+    {
+        return px > x1 && px < x2 && py > y1 && py < y2;
+    }
+
+    /**
+     * Returns whether the circle intersects this node's box (if tight) or region, with the Geometry helper method.
+     */
+    private boolean intersectsCircle(double cx, double cy, double cr, boolean tight)
+    {
+        if (tight) return Geometry.circleIntersectsRectangle(cx, cy, cr, bx1, by1, bx2, by2);
+        return Geometry.circleIntersectsRectangle(cx, cy, cr, x1, y1, x2, y2);
+    }
+
+    /**
+     * Returns whether this node's box (if tight) or region could hold a point inside the rectangle, with the GeometryExtra helper method.
+     */
+    private boolean intersectsRectangle(double rx1, double ry1, double rx2, double ry2, boolean tight)
+    {
+        if (tight) return GeometryExtra.rectangleIntersectsRectangle(bx1, by1, bx2, by2, rx1, ry1, rx2, ry2);
+        return GeometryExtra.rectangleIntersectsRectangle(x1, y1, x2, y2, rx1, ry1, rx2, ry2);
+    }
+
+    /**
+     * Returns the squared distance from the location to this node's box (if tight) or region, with the Geometry helper method.
+     */
+    private double distanceSquared(double px, double py, boolean tight)
+    {
+        if (tight) return Geometry.rectangleDistanceSquared(px, py, bx1, by1, bx2, by2);
+        return Geometry.rectangleDistanceSquared(px, py, x1, y1, x2, y2);
+    }
+
+    /**
+     * Returns the squared distance between the boxes of the two nodes (0 if they overlap).
+     */
+    private static double boxDistanceSquared(PointQuadtree<?> a, PointQuadtree<?> b)
+    {
+        double dx = Math.max(0, Math.max(a.bx1 - b.bx2, b.bx1 - a.bx2));
+        double dy = Math.max(0, Math.max(a.by1 - b.by2, b.by1 - a.by2));
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Returns the quadrant (1-4) of this node in which the location belongs, or 0 if it is at the node's point.
+     * Matches the edge cases of insert, where the quadrant with the lowest number is selected.
+     */
+    private int quadrant(double px, double py)
+    {
+        if (px == this.point.getX() && py == this.point.getY()) return 0;
+        return splitQuadrant(px, py);
+    }
+
+    /**
+     * Returns the quadrant (1-4) of this node in which the location belongs, by the split lines alone.
+     */
+    private int splitQuadrant(double px, double py)
+    {
+        if (px >= this.splitX && py <= this.splitY) return 1;
+        if (px <= this.splitX && py <= this.splitY) return 2;
+        if (px <= this.splitX && py >= this.splitY) return 3;
+        return 4;
+    }
+
+    /**
+     * Returns a new stack for a traversal.
+     * Traversals are iterative, so degenerate (chain-like) trees cannot overflow the call stack. Each has a stack of its
+     * own, so a query may be run from inside another query's action, or from several threads at once.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <E extends Point2D> PointQuadtree<E>[] newStack()
+    {
+        return (PointQuadtree<E>[]) new PointQuadtree[64];
+    }
+
+    /**
+     * Returns a copy of the stack with double the capacity, keeping its contents.
+     */
+    private static <E extends Point2D> PointQuadtree<E>[] grow(PointQuadtree<E>[] stack)
+    {
+        return Arrays.copyOf(stack, stack.length * 2);
+    }
+
+    /**
+     * Accumulator -> Adds all points in the quadtree to a list, in the same order as a recursive (pre-order) walk.
+     *
+     * @param pointsList The list of points to consider when adding points to the list of all points.
+     */
+    public void addPoints(List<E> pointsList)
+    {
+        // An empty quadtree has no points.
+        if (this.point == null) return;
+
+        PointQuadtree<E>[] stack = newStack();
+        int top = 0;
+        stack[top++] = this;
+
+        while (top > 0)
+        {
+            PointQuadtree<E> node = stack[--top];
+
+            // Adding the point which is the node.
+            pointsList.add(node.point);
+
+            // Pushing the children in reverse, so they are visited in order (1-4).
+            if (top + 4 > stack.length) stack = grow(stack);
+            if (node.c4 != null) stack[top++] = node.c4;
+            if (node.c3 != null) stack[top++] = node.c3;
+            if (node.c2 != null) stack[top++] = node.c2;
+            if (node.c1 != null) stack[top++] = node.c1;
+        }
+    }
+
+    /**
+     * Accumulator -> Adds all points in the circle to a list, in the same order as a recursive (pre-order) walk.
+     *
+     * @param pointsInCircleList The list of points to consider when adding points to the list.
+     * @param cx The x-coordinate of the center of the circle.
+     * @param cy The y-coordinate of the center of the circle.
+     * @param cr The radius of the circle.
+     */
+    public void addPointsInCircle(List<E> pointsInCircleList, double cx, double cy, double cr)
+    {
+        forEachInCircle(cx, cy, cr, pointsInCircleList::add);
+    }
+
+    /**
+     * Accumulator -> Adds all points in the rectangle to a list, in the same order as a recursive (pre-order) walk.
+     *
+     * @param pointsInRectangleList The list of points to consider when adding points to the list.
+     * @param rx1 Top left x coordinate of rectangle.
+     * @param ry1 Top left y coordinate of rectangle.
+     * @param rx2 Bottom right x coordinate of rectangle.
+     * @param ry2 Bottom right y coordinate of rectangle.
+     */
+    public void addPointsInRectangle(List<E> pointsInRectangleList, double rx1, double ry1, double rx2, double ry2)
+    {
+        // An empty quadtree has no points.
+        if (this.point == null) return;
+
+        boolean tight = this.tightBounds;
+        PointQuadtree<E>[] stack = newStack();
+        int top = 0;
+        stack[top++] = this;
+
+        while (top > 0)
+        {
+            PointQuadtree<E> node = stack[--top];
+
+            // Skipping subtrees whose region (or box) cannot hold a point inside the rectangle.
+            if (!node.intersectsRectangle(rx1, ry1, rx2, ry2, tight)) continue;
+
+            // The whole subtree is inside the rectangle (not on its edges): adding all of its points, with no further tests.
+            if (node.count > 1 && node.bx1 > rx1 && node.bx2 < rx2 && node.by1 > ry1 && node.by2 < ry2)
+            {
+                int floor = top;
+                stack[top++] = node;
+
+                while (top > floor)
+                {
+                    PointQuadtree<E> inside = stack[--top];
+                    pointsInRectangleList.add(inside.point);
+
+                    if (top + 4 > stack.length) stack = grow(stack);
+                    if (inside.c4 != null) stack[top++] = inside.c4;
+                    if (inside.c3 != null) stack[top++] = inside.c3;
+                    if (inside.c2 != null) stack[top++] = inside.c2;
+                    if (inside.c1 != null) stack[top++] = inside.c1;
+                }
+                continue;
+            }
+
+            // Using the Geometry helper method to determine if the point is within the rectangle.
+            if (GeometryExtra.pointInRectangle(node.point.getX(), node.point.getY(), rx1, ry1, rx2, ry2))
+            {
+                // Adding the point which is within the rectangle.
+                pointsInRectangleList.add(node.point);
+            }
+
+            // Pushing the children in reverse, so they are visited in order (1-4).
+            if (top + 4 > stack.length) stack = grow(stack);
+            if (node.c4 != null) stack[top++] = node.c4;
+            if (node.c3 != null) stack[top++] = node.c3;
+            if (node.c2 != null) stack[top++] = node.c2;
+            if (node.c1 != null) stack[top++] = node.c1;
+        }
+    }
+
+    /**
+     * A fork-join task of buildParallel, building a balanced subtree from a non-empty list of points, sorted by x-coordinate.
+     */
+    private static class BuildTask<E extends Point2D> extends RecursiveTask<PointQuadtree<E>>
+    {
+        private static final long serialVersionUID = 1L; // RecursiveTask is Serializable, though the tasks never are serialized.
+
+        private final List<E> points; // The points for the subtree to hold.
+        private final double x1, y1, x2, y2; // The region of the subtree.
+        private final int threshold; // Subtrees with fewer points are built by this task alone.
+
+        BuildTask(List<E> points, double x1, double y1, double x2, double y2, int threshold)
+        {
+            this.points = points;
+            this.x1 = x1;
+            this.y1 = y1;
+            this.x2 = x2;
+            this.y2 = y2;
+            this.threshold = threshold;
+        }
+
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"}) // For the array of tasks.
+        protected PointQuadtree<E> compute()
+        {
+            // A small subtree is built by this task alone.
+            if (points.size() < threshold) return buildSorted(points, x1, y1, x2, y2);
+
+            // The median point anchors the node, as in buildSorted.
+            PointQuadtree<E> tree = new PointQuadtree<>(points.get(anchorIndex(points)), x1, y1, x2, y2);
+            List<List<E>> quadrants = tree.partition(points);
+
+            // A task for each non-empty quadrant, with the same bounds for the rectangle as insert, run in parallel.
+            double px = tree.splitX, py = tree.splitY;
+            BuildTask<E>[] tasks = (BuildTask<E>[]) new BuildTask[4];
+            if (!quadrants.get(0).isEmpty()) tasks[0] = new BuildTask<>(quadrants.get(0), px, y1, x2, py, threshold);
+            if (!quadrants.get(1).isEmpty()) tasks[1] = new BuildTask<>(quadrants.get(1), x1, y1, px, py, threshold);
+            if (!quadrants.get(2).isEmpty()) tasks[2] = new BuildTask<>(quadrants.get(2), x1, py, px, y2, threshold);
+            if (!quadrants.get(3).isEmpty()) tasks[3] = new BuildTask<>(quadrants.get(3), px, py, x2, y2, threshold);
+
+            List<BuildTask<E>> forked = new ArrayList<>();
+            for (BuildTask<E> task : tasks)
+            {
+                if (task != null) forked.add(task);
+            }
+            ForkJoinTask.invokeAll(forked);
+
+            for (int quadrant = 1; quadrant <= 4; quadrant += 1)
+            {
+                if (tasks[quadrant - 1] != null) tree.setChild(quadrant, tasks[quadrant - 1].join());
+            }
+
+            tree.includeChildren();
+            return tree;
+        }
+    }
+
+    /**
+     * A fork-join task of findInCircleParallel, finding the points within the circle in one subtree.
+     */
+    private static class CircleSearch<E extends Point2D> extends RecursiveTask<List<E>>
+    {
+        private static final long serialVersionUID = 1L; // RecursiveTask is Serializable, though the tasks never are serialized.
+
+        private final PointQuadtree<E> node; // The root of the subtree.
+        private final double cx, cy, cr; // The circle.
+        private final boolean tight; // Pruning with the boxes, or the regions.
+        private final boolean inside; // Whether the subtree is already known to be inside the circle.
+        private final int threshold; // Subtrees with fewer points are searched by this task alone.
+
+        CircleSearch(PointQuadtree<E> node, double cx, double cy, double cr, boolean tight, boolean inside, int threshold)
+        {
+            this.node = node;
+            this.cx = cx;
+            this.cy = cy;
+            this.cr = cr;
+            this.tight = tight;
+            this.inside = inside;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected List<E> compute()
+        {
+            List<E> pointsInCircle = new ArrayList<>();
+
+            // A small subtree is searched by this task alone.
+            if (node.count < threshold)
+            {
+                search(pointsInCircle);
+                return pointsInCircle;
+            }
+
+            boolean contained = inside;
+            if (!contained)
+            {
+                if (!node.intersectsCircle(cx, cy, cr, tight)) return pointsInCircle;
+                contained = Geometry.rectangleInCircle(cx, cy, cr, node.bx1, node.by1, node.bx2, node.by2);
+            }
+
+            if (contained || Geometry.pointInCircle(node.point.getX(), node.point.getY(), cx, cy, cr))
+            {
+                pointsInCircle.add(node.point);
+            }
+
+            // A task for each child, run in parallel, and their points added in order (1-4).
+            List<CircleSearch<E>> tasks = new ArrayList<>();
+            for (int quadrant = 1; quadrant <= 4; quadrant += 1)
+            {
+                if (node.hasChild(quadrant)) tasks.add(new CircleSearch<>(node.getChild(quadrant), cx, cy, cr, tight, contained, threshold));
+            }
+
+            ForkJoinTask.invokeAll(tasks);
+            for (CircleSearch<E> task : tasks)
+            {
+                pointsInCircle.addAll(task.join());
+            }
+
+            return pointsInCircle;
+        }
+
+        /**
+         * Adds the points of the subtree within the circle to the list, as forEachInCircle does, with a stack of its own.
+         */
+        private void search(List<E> pointsInCircle)
+        {
+            PointQuadtree<E>[] stack = newStack();
+            int top = 0;
+            stack[top++] = node;
+
+            // Below a subtree inside the circle, every point is added with no further tests.
+            int floor = inside ? 0 : -1;
+
+            while (top > 0)
+            {
+                PointQuadtree<E> next = stack[--top];
+
+                if (top < floor) floor = -1; // Left the subtree inside the circle.
+
+                if (floor < 0)
+                {
+                    if (!next.intersectsCircle(cx, cy, cr, tight)) continue;
+
+                    if (next.count > 1 && Geometry.rectangleInCircle(cx, cy, cr, next.bx1, next.by1, next.bx2, next.by2))
+                    {
+                        floor = top;
+                    }
+                }
+
+                if (floor >= 0 || Geometry.pointInCircle(next.point.getX(), next.point.getY(), cx, cy, cr))
+                {
+                    pointsInCircle.add(next.point);
+                }
+
+                // Pushing the children in reverse, so they are visited in order (1-4).
+                if (top + 4 > stack.length) stack = grow(stack);
+                if (next.c4 != null) stack[top++] = next.c4;
+                if (next.c3 != null) stack[top++] = next.c3;
+                if (next.c2 != null) stack[top++] = next.c2;
+                if (next.c1 != null) stack[top++] = next.c1;
+            }
+        }
+    }
+
+    /**
+     * A stack of the pending tasks of forEachPairWithin, each a pair of nodes and the kind of task.
+     */
+    private static class PairTasks<E extends Point2D>
+    {
+        static final int self = 0, cross = 1, single = 2; // The kinds of task.
+
+        PointQuadtree<E>[] as = newArray(64), bs = newArray(64);
+        int[] kinds = new int[64];
+        int top = 0;
+
+        void push(PointQuadtree<E> a, PointQuadtree<E> b, int kind)
+        {
+            if (top == kinds.length)
+            {
+                as = Arrays.copyOf(as, top * 2);
+                bs = Arrays.copyOf(bs, top * 2);
+                kinds = Arrays.copyOf(kinds, top * 2);
+            }
+
+            as[top] = a;
+            bs[top] = b;
+            kinds[top] = kind;
+            top += 1;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        static <E extends Point2D> PointQuadtree<E>[] newArray(int length)
+        {
+            return (PointQuadtree<E>[]) new PointQuadtree[length];
+        }
+    }
 }
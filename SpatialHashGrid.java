@@ -0,0 +1,484 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * A Spatial Hash Grid
+ * Divides the plane into square cells, and stores each point in a bucket chosen by hashing its cell.
+ * A circle query only looks at the buckets of the cells the circle overlaps, so when the cell size is about
+ * the query radius (e.g., twice the largest blob radius for collisions), each query looks at a few cells.
+ *
+ * Cells are hashed into a table of buckets rather than laid out as an array, so the plane is unbounded.
+ * Unlike the quadtrees, points at the same location are all kept.
+ *
+ * @author Carter Kruse & John Deforest, Dartmouth CS 10, Spring 2022
+ */
+public class SpatialHashGrid<E extends Point2D> implements SpatialIndex<E>
+{
+    private static final int minBuckets = 16; // Smallest table of buckets.
+
+    private final double cellSize; // Width (and height) of each cell.
+    private Object[][] buckets; // The points in each bucket (the table length is a power of two).
+    private int[] counts; // How many points each bucket holds.
+    private int size; // How many points the grid holds.
+
+    /**
+     * Constructor
+     *
+     * Initializes an empty grid.
+     *
+     * @param cellSize Width (and height) of each cell.
+     */
+    public SpatialHashGrid(double cellSize)
+    {
+        this(cellSize, minBuckets);
+    }
+
+    /**
+     * Constructor
+     *
+     * Initializes an empty grid, with room for about the expected number of points before the table grows.
+     *
+     * @param cellSize Width (and height) of each cell.
+     * @param expectedSize About how many points the grid will hold.
+     */
+    public SpatialHashGrid(double cellSize, int expectedSize)
+    {
+        if (!(cellSize > 0)) throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+
+        this.cellSize = cellSize;
+
+        int numBuckets = minBuckets;
+        while (numBuckets < expectedSize) numBuckets *= 2;
+
+        this.buckets = new Object[numBuckets][];
+        this.counts = new int[numBuckets];
+    }
+
+    // Getters
+    public double getCellSize()
+    {
+        return cellSize;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Inserts the point into the grid.
+     */
+    public void insert(E point)
+    {
+        // Growing the table once it averages more than two points per bucket.
+        if (size >= 2 * buckets.length) rehash(buckets.length * 2);
+
+        add(bucket(cell(point.getX()), cell(point.getY())), point);
+        size += 1;
+    }
+
+    /**
+     * Removes the point from the grid.
+     *
+     * @param point The point, at the location where it was inserted (or last updated).
+     *
+     * @return Whether the point was found in the grid.
+     */
+    public boolean remove(E point)
+    {
+        if (!remove(bucket(cell(point.getX()), cell(point.getY())), point)) return false;
+
+        size -= 1;
+        return true;
+    }
+
+    /**
+     * Updates the grid after the point has moved from (oldX, oldY) to its current location.
+     * The point only changes buckets when it moves into another cell.
+     *
+     * @param point The point, already at its new location.
+     * @param oldX The x-coordinate of the point when it was inserted (or last updated).
+     * @param oldY The y-coordinate of the point when it was inserted (or last updated).
+     *
+     * @return Whether the point was found in the grid (at its old location).
+     */
+    public boolean update(E point, double oldX, double oldY)
+    {
+        int oldBucket = bucket(cell(oldX), cell(oldY));
+        int newBucket = bucket(cell(point.getX()), cell(point.getY()));
+
+        // Staying in the same bucket (almost always the same cell): only checking that the point is there.
+        if (oldBucket == newBucket) return indexOf(oldBucket, point) >= 0;
+
+        if (!remove(oldBucket, point)) return false;
+        add(newBucket, point);
+        return true;
+    }
+
+    /**
+     * Builds a list of all the points in the grid.
+     *
+     * @return The points in the grid.
+     */
+    @SuppressWarnings("unchecked")
+    public List<E> allPoints()
+    {
+        List<E> pointsList = new ArrayList<>(size);
+
+        for (int b = 0; b < buckets.length; b += 1)
+        {
+            for (int i = 0; i < counts[b]; i += 1)
+            {
+                pointsList.add((E) buckets[b][i]);
+            }
+        }
+
+        return pointsList;
+    }
+
+    /**
+     * Uses the grid to find all points within the circle.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     *
+     * @return The points in the circle.
+     */
+    public List<E> findInCircle(double cx, double cy, double cr)
+    {
+        List<E> pointsInCircle = new ArrayList<>();
+        forEachInCircle(cx, cy, cr, pointsInCircle::add);
+        return pointsInCircle;
+    }
+
+    /**
+     * Passes each point within the circle to the action, without building a list.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     * @param action What to do with each point in the circle.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachInCircle(double cx, double cy, double cr, Consumer<? super E> action)
+    {
+        int minCellX = cell(cx - cr), maxCellX = cell(cx + cr);
+        int minCellY = cell(cy - cr), maxCellY = cell(cy + cr);
+
+        // A circle covering more cells than there are buckets is answered by scanning every bucket once.
+        if (spansMoreCells(minCellX, minCellY, maxCellX, maxCellY))
+        {
+            for (int b = 0; b < buckets.length; b += 1)
+            {
+                for (int i = 0; i < counts[b]; i += 1)
+                {
+                    E point = (E) buckets[b][i];
+                    if (Geometry.pointInCircle(point.getX(), point.getY(), cx, cy, cr)) action.accept(point);
+                }
+            }
+            return;
+        }
+
+        // Counting in longs, so the loops end at cells saturated at Integer.MAX_VALUE.
+        for (long cellX = minCellX; cellX <= maxCellX; cellX += 1)
+        {
+            for (long cellY = minCellY; cellY <= maxCellY; cellY += 1)
+            {
+                int b = bucket((int) cellX, (int) cellY);
+
+                for (int i = 0; i < counts[b]; i += 1)
+                {
+                    E point = (E) buckets[b][i];
+
+                    // Other cells can share the bucket; each point is only considered in its own cell (so it is found once).
+                    if (cell(point.getX()) != cellX || cell(point.getY()) != cellY) continue;
+
+                    if (Geometry.pointInCircle(point.getX(), point.getY(), cx, cy, cr)) action.accept(point);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether there is a point other than self within the circle, stopping at the first one found.
+     *
+     * @param cx Circle center x.
+     * @param cy Circle center y.
+     * @param cr Circle radius.
+     * @param self The point to ignore (compared by identity), such as the point at the center of the circle.
+     */
+    public boolean anyInCircleExcept(double cx, double cy, double cr, E self)
+    {
+        int minCellX = cell(cx - cr), maxCellX = cell(cx + cr);
+        int minCellY = cell(cy - cr), maxCellY = cell(cy + cr);
+
+        // Points are not filtered by cell here, as finding one twice does not change the answer.
+        if (spansMoreCells(minCellX, minCellY, maxCellX, maxCellY))
+        {
+            for (int b = 0; b < buckets.length; b += 1)
+            {
+                if (anyInBucketExcept(b, cx, cy, cr, self)) return true;
+            }
+            return false;
+        }
+
+        // Counting in longs, so the loops end at cells saturated at Integer.MAX_VALUE.
+        for (long cellX = minCellX; cellX <= maxCellX; cellX += 1)
+        {
+            for (long cellY = minCellY; cellY <= maxCellY; cellY += 1)
+            {
+                if (anyInBucketExcept(bucket((int) cellX, (int) cellY), cx, cy, cr, self)) return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Uses the grid to find all points within the rectangle.
+     *
+     * @param rx1 Top left x coordinate of rectangle.
+     * @param ry1 Top left y coordinate of rectangle.
+     * @param rx2 Bottom right x coordinate of rectangle.
+     * @param ry2 Bottom right y coordinate of rectangle.
+     *
+     * @return The points in the rectangle.
+     */
+    @SuppressWarnings("unchecked")
+    public List<E> findInRectangle(double rx1, double ry1, double rx2, double ry2)
+    {
+        List<E> pointsInRectangle = new ArrayList<>();
+
+        int minCellX = cell(rx1), maxCellX = cell(rx2);
+        int minCellY = cell(ry1), maxCellY = cell(ry2);
+
+        // A rectangle covering more cells than there are buckets is answered by scanning every bucket once.
+        if (spansMoreCells(minCellX, minCellY, maxCellX, maxCellY))
+        {
+            for (int b = 0; b < buckets.length; b += 1)
+            {
+                for (int i = 0; i < counts[b]; i += 1)
+                {
+                    E point = (E) buckets[b][i];
+                    if (GeometryExtra.pointInRectangle(point.getX(), point.getY(), rx1, ry1, rx2, ry2)) pointsInRectangle.add(point);
+                }
+            }
+            return pointsInRectangle;
+        }
+
+        // Counting in longs, so the loops end at cells saturated at Integer.MAX_VALUE.
+        for (long cellX = minCellX; cellX <= maxCellX; cellX += 1)
+        {
+            for (long cellY = minCellY; cellY <= maxCellY; cellY += 1)
+            {
+                int b = bucket((int) cellX, (int) cellY);
+
+                for (int i = 0; i < counts[b]; i += 1)
+                {
+                    E point = (E) buckets[b][i];
+
+                    // Each point is only considered in its own cell (so it is found once).
+                    if (cell(point.getX()) != cellX || cell(point.getY()) != cellY) continue;
+
+                    if (GeometryExtra.pointInRectangle(point.getX(), point.getY(), rx1, ry1, rx2, ry2)) pointsInRectangle.add(point);
+                }
+            }
+        }
+
+        return pointsInRectangle;
+    }
+
+    /**
+     * Finds the k points nearest to the location, searching rings of cells outward from the location's cell.
+     * Once the k-th best point so far is nearer than the next ring could be, the search stops.
+     *
+     * @param x Location x.
+     * @param y Location y.
+     * @param k How many points to find.
+     *
+     * @return The nearest points (fewer if the grid holds fewer than k), from nearest to farthest.
+     */
+    @SuppressWarnings("unchecked")
+    public List<E> nearest(double x, double y, int k)
+    {
+        List<E> nearestPoints = new ArrayList<>();
+        if (k <= 0 || size == 0) return nearestPoints;
+
+        // The best points so far, farthest first (at most k).
+        PriorityQueue<Candidate<E>> best = new PriorityQueue<>((a, b) -> Double.compare(b.distance, a.distance));
+
+        int centerX = cell(x), centerY = cell(y);
+
+        for (int ring = 0; ; ring += 1)
+        {
+            // Once the rings cover more cells than there are buckets, every bucket is scanned instead.
+            if ((long) (2 * ring + 1) * (2 * ring + 1) > buckets.length)
+            {
+                best.clear();
+                for (int b = 0; b < buckets.length; b += 1)
+                {
+                    for (int i = 0; i < counts[b]; i += 1)
+                    {
+                        offer(best, k, (E) buckets[b][i], x, y);
+                    }
+                }
+                break;
+            }
+
+            // Scanning the cells around the edge of the ring.
+            // Counting in longs, so rings around cells near the int limits do not wrap around.
+            for (long cellX = (long) centerX - ring; cellX <= (long) centerX + ring; cellX += 1)
+            {
+                for (long cellY = (long) centerY - ring; cellY <= (long) centerY + ring; cellY += 1)
+                {
+                    if (Math.abs(cellX - centerX) != ring && Math.abs(cellY - centerY) != ring) continue;
+
+                    int b = bucket((int) cellX, (int) cellY);
+                    for (int i = 0; i < counts[b]; i += 1)
+                    {
+                        E point = (E) buckets[b][i];
+                        if (cell(point.getX()) == cellX && cell(point.getY()) == cellY) offer(best, k, point, x, y);
+                    }
+                }
+            }
+
+            // Every cell beyond this ring is at least ring * cellSize from the location.
+            double beyond = ring * cellSize;
+            if (best.size() == k && beyond * beyond >= best.peek().distance) break;
+        }
+
+        // Emptying the best points farthest first, so they are listed nearest first.
+        while (!best.isEmpty())
+        {
+            nearestPoints.add(best.poll().item);
+        }
+        Collections.reverse(nearestPoints);
+
+        return nearestPoints;
+    }
+
+    // Helper Methods
+
+    /**
+     * Keeps the point among the best (at most k, farthest first), if it is one of the k nearest to the location so far.
+     */
+    private void offer(PriorityQueue<Candidate<E>> best, int k, E point, double x, double y)
+    {
+        double dx = point.getX() - x, dy = point.getY() - y;
+        double distance = dx * dx + dy * dy;
+
+        if (best.size() < k)
+        {
+            best.add(new Candidate<>(point, distance));
+        }
+
+        else if (distance < best.peek().distance)
+        {
+            best.poll();
+            best.add(new Candidate<>(point, distance));
+        }
+    }
+
+    /**
+     * Returns whether the cells from (minCellX, minCellY) to (maxCellX, maxCellY) outnumber the buckets, so that a query
+     * over them scans every bucket once instead. The spans are counted in longs, so cells saturated at the int limits
+     * (for a very large radius) cannot wrap around.
+     */
+    private boolean spansMoreCells(int minCellX, int minCellY, int maxCellX, int maxCellY)
+    {
+        long spanX = (long) maxCellX - minCellX + 1, spanY = (long) maxCellY - minCellY + 1;
+
+        // Checking each span first, so their product cannot overflow.
+        return spanX > buckets.length || spanY > buckets.length || spanX * spanY > buckets.length;
+    }
+
+    /**
+     * Returns the cell (along one axis) holding the coordinate.
+     */
+    private int cell(double coordinate)
+    {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    /**
+     * Returns the bucket holding the cell, hashing its coordinates (with large primes) into the table.
+     */
+    private int bucket(int cellX, int cellY)
+    {
+        return ((cellX * 73856093) ^ (cellY * 19349663)) & (buckets.length - 1);
+    }
+
+    /**
+     * Returns the index of the point (compared by identity) in the bucket, or -1 if it is not there.
+     */
+    private int indexOf(int b, E point)
+    {
+        for (int i = 0; i < counts[b]; i += 1)
+        {
+            if (buckets[b][i] == point) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Adds the point to the bucket, growing the bucket if it is full.
+     */
+    private void add(int b, E point)
+    {
+        if (buckets[b] == null) buckets[b] = new Object[4];
+        else if (counts[b] == buckets[b].length) buckets[b] = Arrays.copyOf(buckets[b], counts[b] * 2);
+
+        buckets[b][counts[b]] = point;
+        counts[b] += 1;
+    }
+
+    /**
+     * Removes the point from the bucket, moving the bucket's last point into its place.
+     *
+     * @return Whether the point was found in the bucket.
+     */
+    private boolean remove(int b, E point)
+    {
+        int i = indexOf(b, point);
+        if (i < 0) return false;
+
+        counts[b] -= 1;
+        buckets[b][i] = buckets[b][counts[b]];
+        buckets[b][counts[b]] = null;
+        return true;
+    }
+
+    /**
+     * Returns whether the bucket holds a point other than self within the circle.
+     */
+    private boolean anyInBucketExcept(int b, double cx, double cy, double cr, E self)
+    {
+        for (int i = 0; i < counts[b]; i += 1)
+        {
+            Object point = buckets[b][i];
+            if (point != self && Geometry.pointInCircle(((Point2D) point).getX(), ((Point2D) point).getY(), cx, cy, cr)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Moves every point into a table with the given number of buckets.
+     */
+    private void rehash(int numBuckets)
+    {
+        List<E> points = allPoints();
+
+        buckets = new Object[numBuckets][];
+        counts = new int[numBuckets];
+
+        for (E point : points)
+        {
+            add(bucket(cell(point.getX()), cell(point.getY())), point);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * An interface for spatial indexes of 2D points.
+ * Implemented by each index engine (PointQuadtree, PRQuadtree, SpatialHashGrid, LinearQuadtree), so the GUIs and batch jobs can swap
+ * engines by configuration and measure them on identical workloads. CircleQuadtree also implements it, for circles only.
+ *
+ * Points are matched by identity (not equals) when removed or updated, and a point must not be moved without
+ * calling update with its previous location.
+ *
+ * @author Carter Kruse & John Deforest, Dartmouth CS 10, Spring 2022
+ */
+public interface SpatialIndex<E extends Point2D>
+{
+    /**
+     * Creates an empty index of the named engine, over the rectangle.
+     *
+     * @param engine "quadtree" (PointQuadtree), "pr" (PRQuadtree), "grid" (SpatialHashGrid), "linear" (LinearQuadtree)
+     *               or "buffered" (a PointQuadtree behind a BufferedQuadtree).
+     * @param cellSize Width (and height) of each cell of a grid (ignored by the other engines).
+     */
+    public static <E extends Point2D> SpatialIndex<E> create(String engine, double x1, double y1, double x2, double y2, double cellSize)
+    {
+        if (engine.equals("quadtree")) return new PointQuadtree<>(x1, y1, x2, y2);
+        if (engine.equals("pr")) return new PRQuadtree<>(x1, y1, x2, y2);
+        if (engine.equals("grid")) return new SpatialHashGrid<>(cellSize);
+        if (engine.equals("linear")) return new LinearQuadtree<>(x1, y1, x2, y2);
+        if (engine.equals("buffered")) return new BufferedQuadtree<>(new PointQuadtree<>(x1, y1, x2, y2));
+
+        throw new IllegalArgumentException("Unknown Index Engine: " + engine);
+    }
+
+    /**
+     * Inserts the point into the index.
+     */
+    public void insert(E point);
+
+    /**
+     * Inserts all the points in the collection into the index (one at a time, unless the engine can batch them).
+     */
+    public default void insertAll(Collection<E> points)
+    {
+        for (E point : points)
+        {
+            insert(point);
+        }
+    }
+
+    /**
+     * Removes the point from the index.
+     *
+     * @param point The point, at the location where it was inserted (or last updated).
+     *
+     * @return Whether the point was found in the index.
+     */
+    public boolean remove(E point);
+
+    /**
+     * Removes all the points in the collection from the index (one at a time, unless the engine can batch them).
+     *
+     * @return Whether any point was removed from the index.
+     */
+    public default boolean removeAll(Collection<E> points)
+    {
+        boolean changed = false;
+        for (E point : points)
+        {
+            changed = remove(point) || changed;
+        }
+        return changed;
+    }
+
+    /**
+     * Updates the index after the point has moved from (oldX, oldY) to its current location.
+     * An engine holding one point per location (such as PointQuadtree) may drop the point instead of replacing another
+     * point at its new location, and return false.
+     *
+     * @return Whether the point was found in the index (at its old location), and is still held.
+     */
+    public boolean update(E point, double oldX, double oldY);
+
+    /**
+     * Finds the number of points in the index.
+     */
+    public int size();
+
+    /**
+     * Builds a list of all the points in the index.
+     */
+    public List<E> allPoints();
+
+    /**
+     * Finds all points within the circle.
+     */
+    public List<E> findInCircle(double cx, double cy, double cr);
+
+    /**
+     * Passes each point within the circle to the action, without building a list.
+     */
+    public void forEachInCircle(double cx, double cy, double cr, Consumer<? super E> action);
+
+    /**
+     * Returns whether there is a point other than self (compared by identity) within the circle.
+     */
+    public boolean anyInCircleExcept(double cx, double cy, double cr, E self);
+
+    /**
+     * Passes each pair of points within the distance of each other (inclusive) to the action, once per pair.
+     *
+     * By default, each point queries the circle around it, and a pair is passed from its earlier point (in the order of
+     * allPoints); an engine can instead find all the pairs in a single traversal.
+     */
+    public default void forEachPairWithin(double distance, BiConsumer<? super E, ? super E> action)
+    {
+        List<E> points = allPoints();
+
+        Map<E, Integer> order = new IdentityHashMap<>();
+        for (int i = 0; i < points.size(); i += 1)
+        {
+            order.put(points.get(i), i);
+        }
+
+        for (int i = 0; i < points.size(); i += 1)
+        {
+            E point = points.get(i);
+            int index = i;
+
+            forEachInCircle(point.getX(), point.getY(), distance, other ->
+            {
+                if (order.get(other) > index) action.accept(point, other);
+            });
+        }
+    }
+
+    /**
+     * Finds all points within the rectangle (not on its edges, as in GeometryExtra.pointInRectangle).
+     */
+    public List<E> findInRectangle(double rx1, double ry1, double rx2, double ry2);
+
+    /**
+     * Finds the k points nearest to the location, from nearest to farthest (fewer if the index holds fewer than k).
+     */
+    public List<E> nearest(double x, double y, int k);
+}